@@ -0,0 +1,60 @@
+package client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverters;
+
+/**
+ * Benchmark for converting the data of an event with
+ * {@link HttpMessageConverterDelegate}, to String, and from JSON to an object.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpMessageConverterDelegateBenchmark {
+
+	private static final ResolvableType STRING_TYPE = ResolvableType.forClass(String.class);
+
+	private static final ResolvableType QUOTE_TYPE = ResolvableType.forClass(Quote.class);
+
+
+	private final HttpMessageConverterDelegate delegate =
+			new HttpMessageConverterDelegate(HttpMessageConverters.forClient().registerDefaults().build());
+
+	private final byte[] text = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+	private final byte[] json =
+			"{\"symbol\":\"ACME\",\"price\":123.45,\"timestamp\":1760000000000}".getBytes(StandardCharsets.UTF_8);
+
+
+	@Benchmark
+	public String readString() {
+		return this.delegate.readWithMessageConverter(this.text, STRING_TYPE, MediaType.TEXT_PLAIN);
+	}
+
+	@Benchmark
+	public Quote readJson() {
+		return this.delegate.readWithMessageConverter(this.json, QUOTE_TYPE, MediaType.APPLICATION_JSON);
+	}
+
+
+	public record Quote(String symbol, double price, long timestamp) {
+	}
+
+}
@@ -0,0 +1,79 @@
+package client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.http.codec.ServerSentEvent;
+
+/**
+ * Benchmark for parsing a stream of events with {@link ServerSentEventSource},
+ * from an in-memory stream, for different sizes of event data. Results are
+ * per event.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerSentEventSourceBenchmark {
+
+	private static final int EVENT_COUNT = 1000;
+
+	private static final URI URL = URI.create("http://localhost:8080/sse");
+
+
+	@Param({"16", "256", "4096"})
+	private int dataSize;
+
+	@Param({"1", "4"})
+	private int dataLines;
+
+	private byte[] content;
+
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder();
+		String line = "x".repeat(Math.max(1, this.dataSize / this.dataLines));
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			sb.append("id:").append(i).append('\n');
+			sb.append("event:message\n");
+			for (int j = 0; j < this.dataLines; j++) {
+				sb.append("data:").append(line).append('\n');
+			}
+			sb.append('\n');
+		}
+		this.content = sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+
+	@Benchmark
+	@OperationsPerInvocation(EVENT_COUNT)
+	public void parse(Blackhole blackhole) throws IOException {
+		try (ServerSentEventSource<String> source = new ServerSentEventSource<>(URL, new ByteArrayInputStream(this.content))) {
+			while (source.receiveNext()) {
+				ServerSentEvent<String> event = source.next();
+				blackhole.consume(event);
+			}
+		}
+	}
+
+}
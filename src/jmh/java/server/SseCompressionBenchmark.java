@@ -0,0 +1,194 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import client.ServerSentEventSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.ServerSentEvent;
+
+/**
+ * Benchmark for the bytes-on-wire versus CPU trade-off of gzip for SSE, with
+ * JSON events of different sizes, and the compressor flushed after each
+ * event, as Tomcat does for each {@code SseEmitter} send.
+ *
+ * <p>{@code compress} is the server cost per event on one long-lived stream,
+ * and reports {@code rawBytes} and {@code wireBytes} counters, whose ratio is
+ * the compression ratio. {@code parse} is the client cost per event to
+ * decompress and parse with {@link ServerSentEventSource}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SseCompressionBenchmark {
+
+	private static final int EVENT_COUNT = 256;
+
+	private static final URI URL = URI.create("http://localhost:8080/sse");
+
+
+	@Param({"128", "1024", "8192"})
+	private int eventSize;
+
+	@Param({"none", "fastest", "default"})
+	private String compression;
+
+	private byte[][] frames;
+
+	private byte[] content;
+
+	private HttpHeaders headers;
+
+	private OutputStream outputStream;
+
+	private CountingOutputStream wire;
+
+	private int index;
+
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(42);
+		this.frames = new byte[EVENT_COUNT][];
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			String json = createJson(random, this.eventSize);
+			this.frames[i] = SseFrame.builder().id(String.valueOf(i)).name("quote").data(json).build().toByteArray();
+		}
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try (OutputStream outputStream = createOutputStream(content)) {
+			for (byte[] frame : this.frames) {
+				outputStream.write(frame);
+				outputStream.flush();
+			}
+		}
+		this.content = content.toByteArray();
+		this.headers = new HttpHeaders();
+		if (!this.compression.equals("none")) {
+			this.headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void setupStream() throws IOException {
+		this.wire = new CountingOutputStream();
+		this.outputStream = createOutputStream(this.wire);
+	}
+
+	private OutputStream createOutputStream(OutputStream outputStream) throws IOException {
+		if (this.compression.equals("none")) {
+			return outputStream;
+		}
+		int level = (this.compression.equals("fastest") ? Deflater.BEST_SPEED : Deflater.DEFAULT_COMPRESSION);
+		return new GZIPOutputStream(outputStream, true) {
+			{
+				this.def.setLevel(level);
+			}
+		};
+	}
+
+	private static String createJson(Random random, int size) {
+		StringBuilder sb = new StringBuilder("{\"symbol\":\"ACME\",\"exchange\":\"NASDAQ\",\"currency\":\"USD\",\"trades\":[");
+		while (sb.length() < size) {
+			if (sb.charAt(sb.length() - 1) != '[') {
+				sb.append(',');
+			}
+			sb.append("{\"tradeId\":").append(random.nextInt(1_000_000))
+					.append(",\"price\":").append(String.format(Locale.ROOT, "%.2f", 100 + random.nextDouble() * 10))
+					.append(",\"quantity\":").append(random.nextInt(1000))
+					.append(",\"side\":\"").append(random.nextBoolean() ? "BUY" : "SELL")
+					.append("\",\"timestamp\":\"2025-06-01T12:").append(10 + random.nextInt(50))
+					.append(':').append(10 + random.nextInt(50)).append(".000Z\"}");
+		}
+		return sb.append("]}").toString();
+	}
+
+
+	@Benchmark
+	public void compress(WireBytes counters) throws IOException {
+		byte[] frame = this.frames[this.index++ & (EVENT_COUNT - 1)];
+		long written = this.wire.count;
+		this.outputStream.write(frame);
+		this.outputStream.flush();
+		counters.rawBytes += frame.length;
+		counters.wireBytes += this.wire.count - written;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EVENT_COUNT)
+	public void parse(Blackhole blackhole) throws IOException {
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(this.content);
+		try (ServerSentEventSource<String> source = new ServerSentEventSource<>(URL, this.headers, inputStream)) {
+			while (source.receiveNext()) {
+				ServerSentEvent<String> event = source.next();
+				blackhole.consume(event);
+			}
+		}
+	}
+
+
+	/**
+	 * Bytes before and after compression, reported as secondary results.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class WireBytes {
+
+		public long rawBytes;
+
+		public long wireBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.rawBytes = 0;
+			this.wireBytes = 0;
+		}
+
+	}
+
+
+	/**
+	 * Stands in for the socket, and counts the bytes written to it.
+	 */
+	private static final class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			this.count += len;
+		}
+	}
+
+}
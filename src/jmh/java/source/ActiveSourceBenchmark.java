@@ -0,0 +1,101 @@
+package source;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark for the handoff of items from the receiver task of an
+ * {@link ActiveSource} to the consumer, comparing {@link StructuredActiveSource}
+ * with {@link ExecutorServiceActiveSource}, and {@code receiveNext()} with
+ * {@code tryReceiveNext(Duration)}. Throughput and sampled latency are per
+ * item, and include starting and closing the ActiveSource.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActiveSourceBenchmark {
+
+	private static final int ITEM_COUNT = 10_000;
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(1);
+
+
+	@Param({"structured", "executorService"})
+	private String type;
+
+
+	@Benchmark
+	@OperationsPerInvocation(ITEM_COUNT)
+	public void receiveNext(Blackhole blackhole) throws IOException, InterruptedException {
+		try (ActiveSource<Integer> source = createSource()) {
+			while (source.receiveNext()) {
+				blackhole.consume(source.next());
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ITEM_COUNT)
+	public void tryReceiveNext(Blackhole blackhole) throws IOException, InterruptedException {
+		try (ActiveSource<Integer> source = createSource()) {
+			while (!source.isClosed()) {
+				if (source.tryReceiveNext(TIMEOUT)) {
+					blackhole.consume(source.next());
+				}
+			}
+		}
+	}
+
+	private ActiveSource<Integer> createSource() {
+		CountingSource source = new CountingSource(ITEM_COUNT);
+		return switch (this.type) {
+			case "structured" -> StructuredActiveSource.from(source);
+			case "executorService" -> ExecutorServiceActiveSource.from(source);
+			default -> throw new IllegalArgumentException("Unknown type " + this.type);
+		};
+	}
+
+
+	/**
+	 * Source that produces a sequence of integers without blocking.
+	 */
+	private static final class CountingSource extends AbstractSource<Integer> {
+
+		private final int count;
+
+		private int current;
+
+		CountingSource(int count) {
+			this.count = count;
+		}
+
+		@Override
+		protected @Nullable Integer receiveItem() {
+			return (this.current < this.count ? this.current++ : null);
+		}
+
+		@Override
+		public boolean canReceiveWithoutBlocking() {
+			return true;
+		}
+	}
+
+}
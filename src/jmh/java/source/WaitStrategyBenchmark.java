@@ -0,0 +1,117 @@
+package source;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the latency of the handoff of one item from the receiver
+ * task of an {@link ActiveSource} to a consumer that is already waiting,
+ * for each {@link WaitStrategy}. Each operation signals the receiver task,
+ * which spins until signalled, to produce one item, and then receives it,
+ * so the sampled time is a round trip that is dominated by how quickly the
+ * consumer notices the item.
+ *
+ * <p>The receiver task spins, and so do the consumer with spinning
+ * strategies, so this needs at least two idle cores to give meaningful
+ * results.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WaitStrategyBenchmark {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(1);
+
+
+	@Param({"park", "spinThenYieldThenPark", "busySpin"})
+	private String strategy;
+
+	private PingSource ping;
+
+	private StructuredActiveSource<Long> source;
+
+
+	@Setup
+	public void setup() {
+		this.ping = new PingSource();
+		this.source = StructuredActiveSource.from(this.ping);
+		this.source.setWaitStrategy(switch (this.strategy) {
+			case "park" -> WaitStrategy.park();
+			case "spinThenYieldThenPark" -> WaitStrategy.spinThenYieldThenPark();
+			case "busySpin" -> WaitStrategy.busySpin();
+			default -> throw new IllegalArgumentException("Unknown strategy " + this.strategy);
+		});
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.source.close();
+	}
+
+
+	@Benchmark
+	public long receiveNext() throws IOException, InterruptedException {
+		this.ping.signal();
+		if (!this.source.receiveNext()) {
+			throw new IllegalStateException("Source completed");
+		}
+		return this.source.next();
+	}
+
+	@Benchmark
+	public long tryReceiveNext() throws IOException, InterruptedException {
+		this.ping.signal();
+		if (!this.source.tryReceiveNext(TIMEOUT)) {
+			throw new IllegalStateException("No item within " + TIMEOUT);
+		}
+		return this.source.next();
+	}
+
+
+	/**
+	 * Source that spins until signalled, and then produces the current time.
+	 */
+	private static final class PingSource extends AbstractSource<Long> {
+
+		private volatile boolean signalled;
+
+		void signal() {
+			this.signalled = true;
+		}
+
+		@Override
+		protected Long receiveItem() throws InterruptedException {
+			while (!this.signalled) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				Thread.onSpinWait();
+			}
+			this.signalled = false;
+			return System.nanoTime();
+		}
+
+		@Override
+		public boolean canReceiveWithoutBlocking() {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,298 @@
+package client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.BasicRequestProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.jspecify.annotations.Nullable;
+import source.AbstractPrefetchingSource;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.HttpMessageConverters;
+import org.springframework.util.Assert;
+
+/**
+ * ActiveSource that receives an SSE stream with the Apache async HTTP client,
+ * without a receiver thread. Response bytes arrive in data callbacks on the
+ * client's I/O threads, are run through an incremental
+ * {@link ServerSentEventParser}, and the resulting events are pushed straight
+ * into the prefetch queue. An idle stream costs no thread.
+ *
+ * <p>Flow control uses the capacity window of the client. Bytes are
+ * acknowledged, which lets the client read more, only once all events
+ * parsed from them are in the queue. When the queue is full, the remaining
+ * events stay buffered, and reading pauses until consumers take items from
+ * the queue, at which point the consumer thread puts the buffered events in
+ * the queue, and acknowledges the bytes. Producer work on the I/O and
+ * consumer threads is serialized with a lock.
+ *
+ * <p>The client must be {@link CloseableHttpAsyncClient#start() started},
+ * and is not closed by this Source. With an HTTP/2 client, e.g. from
+ * {@code HttpAsyncClients.customHttp2()}, Sources for the same server share
+ * one connection, and the capacity window of each is that of its stream, so
+ * a slow consumer pauses only its own stream.
+ *
+ * @param <T> the type of data in received events
+ */
+public class AsyncServerSentEventSource<T> extends AbstractPrefetchingSource<ServerSentEvent<T>> {
+
+	private final CloseableHttpAsyncClient client;
+
+	private final URI url;
+
+	private final ServerSentEventParser parser = new ServerSentEventParser();
+
+	private final ServerSentEventDecoder<T> decoder;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private @Nullable String lastEventId;
+
+	private volatile @Nullable Future<Void> future;
+
+	private volatile boolean paused;
+
+	// Guarded by lock
+
+	private @Nullable CapacityChannel capacityChannel;
+
+	private int unacknowledgedBytes;
+
+	private @Nullable ServerSentEvent<T> pendingEvent;
+
+	private boolean endOfStream;
+
+	private boolean done;
+
+
+	public AsyncServerSentEventSource(CloseableHttpAsyncClient client, URI url) {
+		this(client, url, HttpMessageConverters.forClient().build(),
+				_ -> ResolvableType.forClass(String.class), _ -> MediaType.TEXT_PLAIN);
+	}
+
+	public AsyncServerSentEventSource(
+			CloseableHttpAsyncClient client, URI url, HttpMessageConverters converters,
+			Function<String, ResolvableType> typeResolver, Function<String, MediaType> contentTypeResolver) {
+
+		Assert.notNull(client, "CloseableHttpAsyncClient is required");
+		Assert.notNull(url, "URL is required");
+		this.client = client;
+		this.url = url;
+		this.decoder = new ServerSentEventDecoder<>(converters, typeResolver, contentTypeResolver);
+	}
+
+
+	/**
+	 * Set the id to send as {@code Last-Event-ID}.
+	 * This must be set before the first call to receive.
+	 */
+	public void setLastEventId(@Nullable String lastEventId) {
+		this.lastEventId = lastEventId;
+	}
+
+
+	@Override
+	protected void startProducing() {
+		BasicHttpRequest request = new BasicHttpRequest(Method.GET, this.url);
+		request.addHeader("Accept", MediaType.TEXT_EVENT_STREAM_VALUE);
+		if (this.lastEventId != null) {
+			request.addHeader("Last-Event-ID", this.lastEventId);
+		}
+		this.future = this.client.execute(new BasicRequestProducer(request, null), new ResponseConsumer(), null);
+	}
+
+	@Override
+	protected void stopProducing() {
+		Future<Void> future = this.future;
+		if (future != null) {
+			future.cancel(true);
+		}
+	}
+
+	@Override
+	protected void itemsConsumed(int count) {
+		if (this.paused) {
+			this.lock.lock();
+			try {
+				if (this.paused) {
+					drain();
+				}
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Put buffered events in the queue until it is full, and once all are in,
+	 * acknowledge the bytes they were parsed from. Must be called with the
+	 * lock held.
+	 */
+	private void drain() {
+		if (this.done) {
+			return;
+		}
+		try {
+			while (true) {
+				ServerSentEvent<T> event = this.pendingEvent;
+				if (event == null) {
+					if (!this.parser.parseNext()) {
+						break;
+					}
+					event = this.decoder.decode(this.parser);
+				}
+				if (!tryPublish(event)) {
+					this.pendingEvent = event;
+					// Pause, then check again, as a consumer may have emptied the queue before it
+					// could see the pause, and then itemsConsumed would not resume
+					this.paused = true;
+					if (!tryPublish(event)) {
+						return;
+					}
+					this.paused = false;
+				}
+				this.pendingEvent = null;
+			}
+			this.paused = false;
+			if (this.endOfStream) {
+				finish(this.parser.hasPartialEvent() ? new EOFException("Partial event") : null);
+			}
+			else if (this.unacknowledgedBytes > 0 && this.capacityChannel != null) {
+				int increment = this.unacknowledgedBytes;
+				this.unacknowledgedBytes = 0;
+				this.capacityChannel.update(increment);
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			finish(ex);
+			stopProducing();
+		}
+	}
+
+	private void finish(@Nullable Exception ex) {
+		if (!this.done) {
+			this.done = true;
+			this.paused = false;
+			complete(ex);
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return "AsyncServerSentEventSource[\"" + this.url + "\"]";
+	}
+
+
+	/**
+	 * Consumer for the response, called on the I/O threads of the client.
+	 */
+	private final class ResponseConsumer implements AsyncResponseConsumer<Void> {
+
+		private @Nullable FutureCallback<Void> resultCallback;
+
+		@Override
+		public void consumeResponse(
+				HttpResponse response, @Nullable EntityDetails entityDetails, HttpContext context,
+				FutureCallback<Void> resultCallback) throws IOException {
+
+			if (response.getCode() != HttpStatus.SC_OK) {
+				throw new HttpResponseException(response.getCode(), response.getReasonPhrase());
+			}
+			this.resultCallback = resultCallback;
+			if (entityDetails == null) {
+				streamEnd(null);
+			}
+		}
+
+		@Override
+		public void informationResponse(HttpResponse response, HttpContext context) {
+		}
+
+		@Override
+		public void updateCapacity(CapacityChannel capacityChannel) {
+			lock.lock();
+			try {
+				AsyncServerSentEventSource.this.capacityChannel = capacityChannel;
+				if (!paused) {
+					drain();
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void consume(ByteBuffer src) {
+			lock.lock();
+			try {
+				if (done) {
+					return;
+				}
+				unacknowledgedBytes += src.remaining();
+				parser.feed(src);
+				if (!paused) {
+					drain();
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void streamEnd(@Nullable List<? extends Header> trailers) {
+			lock.lock();
+			try {
+				endOfStream = true;
+				if (!paused) {
+					drain();
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+			if (this.resultCallback != null) {
+				this.resultCallback.completed(null);
+			}
+		}
+
+		@Override
+		public void failed(Exception cause) {
+			lock.lock();
+			try {
+				finish(cause);
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void releaseResources() {
+		}
+	}
+
+}
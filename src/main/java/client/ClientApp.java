@@ -1,10 +1,20 @@
 package client;
 
+import java.net.URI;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
 import source.ActiveSource;
+import source.MergedActiveSource;
+import source.SourceGatherers;
 import source.StructuredActiveSource;
 
 import org.springframework.http.codec.ServerSentEvent;
@@ -20,9 +30,14 @@ public class ClientApp {
 	static void main(String[] args) throws Exception {
 		receiveScenario();
 //		tryReceiveScenario();
+//		receiveBatchScenario();
 //		closeSourceScenario();
 //		sourceCompletesScenario();
 //		sourceCompletesWithErrorScenario();
+//		reconnectScenario();
+//		asyncScenario();
+//		http2Scenario();
+//		streamScenario();
 	}
 
 
@@ -54,6 +69,24 @@ public class ClientApp {
 		}
 	}
 
+	/**
+	 * Receive in batches, draining all items available at once.
+	 */
+	private static void receiveBatchScenario() throws Exception {
+		try (ActiveSource<ServerSentEvent<String>> source = performSseRequest("/sse")) {
+			List<ServerSentEvent<String>> events = new ArrayList<>();
+			while (!source.isClosed()) {
+				if (source.receiveBatch(events, 32, Duration.ofSeconds(2)) > 0) {
+					logger.info("Got " + events);
+					events.clear();
+				}
+				else {
+					logger.info("Timed out, trying again");
+				}
+			}
+		}
+	}
+
 	/**
 	 * Closing the Source from the receiving side stops the receiver subtask.
 	 */
@@ -100,15 +133,89 @@ public class ClientApp {
 		}
 	}
 
-	private static ActiveSource<ServerSentEvent<String>> performSseRequest(String path) {
-		return client.get().uri(path).exchangeForRequiredValue((request, response) -> {
-			if (response.getStatusCode().isError()) {
-				throw response.createException();
+	/**
+	 * Reconnect with Last-Event-ID when the connection is lost, and checkpoint
+	 * the id of the last processed event to resume from after a restart.
+	 */
+	private static void reconnectScenario() throws Exception {
+		Path file = Path.of(System.getProperty("java.io.tmpdir"), "loom-sse-checkpoint");
+		try (EventIdCheckpoint checkpoint = new EventIdCheckpoint(file)) {
+			ReconnectingServerSentEventSource<String> reconnectingSource =
+					new ReconnectingServerSentEventSource<>(lastEventId -> connect("/sse", lastEventId));
+			reconnectingSource.setCheckpoint(checkpoint);
+			try (ActiveSource<ServerSentEvent<String>> source = StructuredActiveSource.from(reconnectingSource)) {
+				while (source.receiveNext()) {
+					ServerSentEvent<String> event = source.next();
+					logger.info("Got " + event);
+					checkpoint.update(event.id());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Receive with the async HTTP client, without a receiver thread.
+	 */
+	private static void asyncScenario() throws Exception {
+		try (CloseableHttpAsyncClient httpClient = HttpAsyncClients.createDefault()) {
+			httpClient.start();
+			URI url = URI.create("http://localhost:8080/sse");
+			try (ActiveSource<ServerSentEvent<String>> source = new AsyncServerSentEventSource<>(httpClient, url)) {
+				while (source.receiveNext()) {
+					logger.info("Got " + source.next());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Receive several streams multiplexed over one HTTP/2 cleartext connection,
+	 * each with its own flow-control window, merged into one Source.
+	 */
+	private static void http2Scenario() throws Exception {
+		try (CloseableHttpAsyncClient httpClient = HttpAsyncClients.customHttp2().build()) {
+			httpClient.start();
+			List<AsyncServerSentEventSource<String>> sources = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				sources.add(new AsyncServerSentEventSource<>(httpClient, URI.create("http://localhost:8080/sse")));
+			}
+			try (MergedActiveSource<ServerSentEvent<String>> source = MergedActiveSource.from(sources)) {
+				while (source.receiveNext()) {
+					MergedActiveSource.SourceItem<ServerSentEvent<String>> item = source.next();
+					logger.info("Got " + item.item() + " from stream " + item.sourceIndex());
+				}
 			}
-			ServerSentEventSource<String> source = new ServerSentEventSource<>(request.getURI(), response.getBody());
-			return StructuredActiveSource.from(source); // or use ExecutorServiceActiveSource
+		}
+	}
+
+	/**
+	 * Consume as a Stream, with events batched in time windows.
+	 */
+	private static void streamScenario() {
+		try (Stream<ServerSentEvent<String>> events = performSseRequest("/sse").stream()) {
+			events.gather(SourceGatherers.windowByTime(Duration.ofMillis(100)))
+					.forEach(batch -> logger.info("Got " + batch));
+		}
+	}
+
+	private static ActiveSource<ServerSentEvent<String>> performSseRequest(String path) {
+		ServerSentEventSource<String> source = connect(path, null);
+		return StructuredActiveSource.from(source); // or use ExecutorServiceActiveSource
+	}
 
-		}, false);
+	private static ServerSentEventSource<String> connect(String path, @Nullable String lastEventId) {
+		return client.get().uri(path)
+				.headers(headers -> {
+					if (lastEventId != null) {
+						headers.set("Last-Event-ID", lastEventId);
+					}
+				})
+				.exchangeForRequiredValue((request, response) -> {
+					if (response.getStatusCode().isError()) {
+						throw response.createException();
+					}
+					return new ServerSentEventSource<>(request.getURI(), response.getHeaders(), response.getBody());
+				}, false);
 	}
 
 }
@@ -0,0 +1,110 @@
+package client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Keeps the id of the last processed event in a local file, so that a
+ * restarted process can resume a stream with {@code Last-Event-ID}, e.g.
+ * via {@link ReconnectingServerSentEventSource#setCheckpoint}.
+ *
+ * <p>Consumers call {@link #update(String)} after processing each event, and
+ * that writes the file at most once per the configured interval. The file is
+ * replaced atomically, so it never contains a partially written id.
+ * {@link #close()} writes any pending update.
+ */
+public class EventIdCheckpoint implements AutoCloseable {
+
+	private final Path file;
+
+	private final long intervalNanos;
+
+	private @Nullable String lastEventId;
+
+	private @Nullable String savedEventId;
+
+	private long lastSaveTime;
+
+
+	public EventIdCheckpoint(Path file) {
+		this(file, Duration.ofSeconds(1));
+	}
+
+	public EventIdCheckpoint(Path file, Duration interval) {
+		Assert.notNull(file, "File is required");
+		this.file = file;
+		this.intervalNanos = interval.toNanos();
+		this.lastSaveTime = System.nanoTime();
+	}
+
+
+	/**
+	 * Return the event id saved in the file, or {@code null} if there is none.
+	 */
+	public synchronized @Nullable String load() throws IOException {
+		if (this.lastEventId == null && Files.exists(this.file)) {
+			String id = Files.readString(this.file, StandardCharsets.UTF_8);
+			this.lastEventId = (id.isEmpty() ? null : id);
+			this.savedEventId = this.lastEventId;
+		}
+		return this.lastEventId;
+	}
+
+	/**
+	 * Record the id of the last processed event, and write it to the file if
+	 * the configured interval has elapsed since the last write.
+	 */
+	public synchronized void update(@Nullable String eventId) {
+		if (eventId == null) {
+			return;
+		}
+		this.lastEventId = eventId;
+		if (System.nanoTime() - this.lastSaveTime >= this.intervalNanos) {
+			save();
+		}
+	}
+
+	/**
+	 * Write the id of the last processed event to the file, if not yet written.
+	 */
+	public synchronized void flush() {
+		if (this.lastEventId != null && !this.lastEventId.equals(this.savedEventId)) {
+			save();
+		}
+	}
+
+	private void save() {
+		String id = this.lastEventId;
+		Assert.state(id != null, "No event id");
+		try {
+			Path tempFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+			Files.writeString(tempFile, id, StandardCharsets.UTF_8);
+			Files.move(tempFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			this.savedEventId = id;
+			this.lastSaveTime = System.nanoTime();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to write checkpoint to " + this.file, ex);
+		}
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+	@Override
+	public String toString() {
+		return "EventIdCheckpoint[" + this.file + "]";
+	}
+
+}
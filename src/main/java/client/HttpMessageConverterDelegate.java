@@ -4,6 +4,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jspecify.annotations.Nullable;
 
@@ -16,49 +18,52 @@ import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverters;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.SmartHttpMessageConverter;
-import org.springframework.util.ObjectUtils;
 import org.springframework.web.client.RestClientException;
 
+/**
+ * Delegate to read content with the first {@link HttpMessageConverter} that
+ * can read the target type and content type. The matching converter, along
+ * with the style in which to invoke it, is cached per combination of target
+ * type and content type, which rarely changes across the events of a stream.
+ */
 final class HttpMessageConverterDelegate {
 
 	private final HttpMessageConverters converters;
 
+	private final Map<ReaderKey, ConverterReader> readerCache = new ConcurrentHashMap<>();
+
 
 	HttpMessageConverterDelegate(HttpMessageConverters converters) {
 		this.converters = converters;
 	}
 
 
-	@SuppressWarnings({"rawtypes", "unchecked"})
 	public <T> @Nullable T readWithMessageConverter(
 			byte[] content, ResolvableType targetType, @Nullable MediaType contentType) {
 
-		if (ObjectUtils.isEmpty(content)) {
+		return readWithMessageConverter(content, 0, content.length, targetType, contentType);
+	}
+
+	/**
+	 * Variant of {@link #readWithMessageConverter(byte[], ResolvableType, MediaType)}
+	 * that reads from a region of the given array, without copying it. The
+	 * array must not be modified until this method returns.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> @Nullable T readWithMessageConverter(
+			byte[] content, int offset, int length, ResolvableType targetType, @Nullable MediaType contentType) {
+
+		if (length == 0) {
 			return null;
 		}
 
-		HttpInputMessage inputMessage = new ByteArrayHttpInputMessage(contentType, content);
+		ConverterReader reader = this.readerCache.computeIfAbsent(
+				new ReaderKey(targetType, contentType), this::resolveReader);
+
+		HttpInputMessage inputMessage = new ByteArrayHttpInputMessage(contentType, content, offset, length);
 
 		try {
-			for (HttpMessageConverter<?> converter : this.converters) {
-				if (converter instanceof GenericHttpMessageConverter genericConverter) {
-					if (genericConverter.canRead(targetType.getType(), null, contentType)) {
-						return (T) genericConverter.read(targetType.getType(), null, inputMessage);
-					}
-				}
-				else if (converter instanceof SmartHttpMessageConverter smartConverter) {
-					if (smartConverter.canRead(targetType, contentType)) {
-						return (T) smartConverter.read(targetType, inputMessage, null);
-					}
-				}
-				else {
-					if (converter.canRead(targetType.resolve(Object.class), contentType)) {
-						return (T) converter.read((Class) targetType.resolve(Object.class), inputMessage);
-					}
-				}
-			}
-			throw new IllegalArgumentException(
-					"No HttpMessageConverter for type " + targetType + " and content type " + contentType);
+			return (T) reader.read(inputMessage);
 		}
 		catch (UncheckedIOException | IOException | HttpMessageNotReadableException exc) {
 				Throwable cause;
@@ -72,6 +77,46 @@ final class HttpMessageConverterDelegate {
 			}
 	}
 
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private ConverterReader resolveReader(ReaderKey key) {
+		ResolvableType targetType = key.targetType();
+		MediaType contentType = key.contentType();
+		for (HttpMessageConverter<?> converter : this.converters) {
+			if (converter instanceof GenericHttpMessageConverter genericConverter) {
+				if (genericConverter.canRead(targetType.getType(), null, contentType)) {
+					return message -> genericConverter.read(targetType.getType(), null, message);
+				}
+			}
+			else if (converter instanceof SmartHttpMessageConverter smartConverter) {
+				if (smartConverter.canRead(targetType, contentType)) {
+					return message -> smartConverter.read(targetType, message, null);
+				}
+			}
+			else {
+				Class<?> targetClass = targetType.resolve(Object.class);
+				if (converter.canRead(targetClass, contentType)) {
+					return message -> converter.read((Class) targetClass, message);
+				}
+			}
+		}
+		throw new IllegalArgumentException(
+				"No HttpMessageConverter for type " + targetType + " and content type " + contentType);
+	}
+
+
+	private record ReaderKey(ResolvableType targetType, @Nullable MediaType contentType) {
+	}
+
+
+	/**
+	 * A resolved converter, along with the style in which to invoke it.
+	 */
+	@FunctionalInterface
+	private interface ConverterReader {
+
+		@Nullable Object read(HttpInputMessage message) throws IOException;
+	}
+
 
 	private static class ByteArrayHttpInputMessage implements HttpInputMessage {
 
@@ -79,12 +124,13 @@ final class HttpMessageConverterDelegate {
 
 		private final InputStream content;
 
-		ByteArrayHttpInputMessage(@Nullable MediaType mediaType, byte[] content) {
+		ByteArrayHttpInputMessage(@Nullable MediaType mediaType, byte[] content, int offset, int length) {
 			this.headers = new HttpHeaders();
 			if (mediaType != null) {
 				this.headers.setContentType(mediaType);
 			}
-			this.content = new ByteArrayInputStream(content);
+			this.headers.setContentLength(length);
+			this.content = new ByteArrayInputStream(content, offset, length);
 		}
 
 		@Override
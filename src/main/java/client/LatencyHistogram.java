@@ -0,0 +1,138 @@
+package client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * Concurrent histogram of non-negative values, such as latencies in
+ * microseconds, in the style of HdrHistogram: buckets grow exponentially,
+ * and each is split in 64 linear sub-buckets, so that recorded values are
+ * kept with a relative precision of better than 2% over the full range of
+ * {@code long} values, in a fixed amount of memory.
+ *
+ * <p>Recording is lock-free, and may be done from many threads at once.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+	private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS;
+
+	private static final int COUNTS_LENGTH = SUB_BUCKET_COUNT + BUCKET_COUNT * SUB_BUCKET_HALF_COUNT;
+
+
+	private final String name;
+
+	private final String unit;
+
+	private final AtomicLongArray counts = new AtomicLongArray(COUNTS_LENGTH);
+
+	private final LongAdder totalCount = new LongAdder();
+
+	private final LongAdder totalValue = new LongAdder();
+
+	private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+
+
+	public LatencyHistogram(String name, String unit) {
+		this.name = name;
+		this.unit = unit;
+	}
+
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Record a value.
+	 */
+	public void record(long value) {
+		Assert.isTrue(value >= 0, "Value must not be negative");
+		this.counts.incrementAndGet(indexFor(value));
+		this.totalCount.increment();
+		this.totalValue.add(value);
+		this.maxValue.accumulate(value);
+	}
+
+	public long getCount() {
+		return this.totalCount.sum();
+	}
+
+	public long getMax() {
+		return this.maxValue.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return (count != 0 ? (double) this.totalValue.sum() / count : 0);
+	}
+
+	/**
+	 * Return the value at the given percentile, e.g. 99.9, as the highest
+	 * value equivalent to the recorded values in its bucket, but not higher
+	 * than the maximum recorded value.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		Assert.isTrue(percentile >= 0 && percentile <= 100, "Percentile must be in the range 0 to 100");
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < COUNTS_LENGTH; i++) {
+			seen += this.counts.get(i);
+			if (seen >= target) {
+				return Math.min(highestValueAt(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Values below {@code SUB_BUCKET_COUNT} have an index each. Higher values
+	 * share an index with others that have the same highest 7 bits.
+	 */
+	private static int indexFor(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+		int subBucket = (int) (value >>> shift);
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (subBucket - SUB_BUCKET_HALF_COUNT);
+	}
+
+	private static long highestValueAt(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int offset = index - SUB_BUCKET_COUNT;
+		int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+		long subBucket = SUB_BUCKET_HALF_COUNT + (offset % SUB_BUCKET_HALF_COUNT);
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+
+	/**
+	 * Return a one-line summary with count, mean, p50, p99, p99.9, and max.
+	 */
+	public String summary() {
+		return String.format("%-22s count=%-9d mean=%9.1f p50=%9d p99=%9d p999=%9d max=%9d (%s)",
+				this.name, getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(99),
+				getValueAtPercentile(99.9), getMax(), this.unit);
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram[" + this.name + ", count=" + getCount() + "]";
+	}
+
+}
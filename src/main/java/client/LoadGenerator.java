@@ -0,0 +1,254 @@
+package client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+import source.ActiveSource;
+import source.ActiveSourceGroup;
+import source.ExecutorServiceActiveSource;
+import source.StructuredActiveSource;
+
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.client.RestClient;
+
+/**
+ * Load generator that opens many concurrent SSE streams to the {@code /load}
+ * endpoint of the local {@code ServerApp}, each consumed through an
+ * {@link ActiveSource} on its own virtual thread, and reports latency and
+ * throughput histograms at the end.
+ *
+ * <p>Options are passed as {@code --name=value} arguments:
+ * <ul>
+ * <li>{@code connections} the number of streams to open, 1000 by default
+ * <li>{@code ramp-up} seconds over which to open the streams, 10 by default
+ * <li>{@code duration} seconds the server sends events on each stream, 60 by default
+ * <li>{@code interval} milliseconds between events sent by the server, 100 by default
+ * <li>{@code size} bytes of data per event, 64 by default
+ * <li>{@code client} the HTTP client to use, {@code classic} (default) for the classic client with a
+ * {@link ServerSentEventSource}, or for an {@link AsyncServerSentEventSource}, {@code async} for the
+ * async client over HTTP/1.1, or {@code h2c} for the async client over HTTP/2 cleartext
+ * <li>{@code source} the ActiveSource to use with the classic client, {@code structured} (default),
+ * {@code executorService}, or {@code group} for an {@link ActiveSourceGroup} shared by all streams
+ * <li>{@code url} the base URL of the server, {@code http://localhost:8080} by default
+ * </ul>
+ *
+ * <p>The classic and {@code async} clients open a connection per stream, while {@code h2c}
+ * multiplexes all streams over one connection, so comparing {@code async} and {@code h2c} shows the
+ * cost of HTTP/2 framing and shared flow control against that of many connections. The server
+ * limits the number of concurrent streams per HTTP/2 connection, see {@code ServerApp}. With the
+ * async clients, the time to connect is part of the time to first event.
+ */
+public class LoadGenerator {
+
+	private final static Logger logger =  LogManager.getLogger(LoadGenerator.class);
+
+
+	private final int connections;
+
+	private final Duration rampUp;
+
+	private final Duration duration;
+
+	private final String clientType;
+
+	private final String sourceType;
+
+	private final String path;
+
+	private final URI url;
+
+	private final RestClient client;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	private @Nullable CloseableHttpAsyncClient asyncClient;
+
+	private @Nullable PoolingAsyncClientConnectionManager asyncConnectionManager;
+
+	private final ActiveSourceGroup group = new ActiveSourceGroup();
+
+	private final LatencyHistogram connectTime = new LatencyHistogram("connect time", "us");
+
+	private final LatencyHistogram firstEventTime = new LatencyHistogram("time to first event", "us");
+
+	private final LatencyHistogram interEventTime = new LatencyHistogram("inter-event latency", "us");
+
+	private final LatencyHistogram streamThroughput = new LatencyHistogram("stream throughput", "events/s");
+
+	private final LongAdder eventCount = new LongAdder();
+
+	private final LongAdder errorCount = new LongAdder();
+
+
+	LoadGenerator(Map<String, String> options) {
+		this.connections = Integer.parseInt(options.getOrDefault("connections", "1000"));
+		this.rampUp = Duration.ofSeconds(Long.parseLong(options.getOrDefault("ramp-up", "10")));
+		this.duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+		this.clientType = options.getOrDefault("client", "classic");
+		this.sourceType = options.getOrDefault("source", "structured");
+		long interval = Long.parseLong(options.getOrDefault("interval", "100"));
+		// The server completes each stream after the duration, see the note in consume()
+		this.path = "/load?count=" + Math.max(1, this.duration.toMillis() / interval) +
+				"&interval=" + interval + "&size=" + options.getOrDefault("size", "64");
+		String baseUrl = options.getOrDefault("url", "http://localhost:8080");
+		this.url = URI.create(baseUrl + this.path);
+		this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(this.connections)
+				.setMaxConnPerRoute(this.connections)
+				.build();
+		CloseableHttpClient httpClient = HttpClients.custom().setConnectionManager(this.connectionManager).build();
+		this.client = RestClient.builder()
+				.baseUrl(baseUrl)
+				.requestFactory(new HttpComponentsClientHttpRequestFactory(httpClient))
+				.build();
+		switch (this.clientType) {
+			case "classic" -> {
+			}
+			case "async" -> {
+				this.asyncConnectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+						.setMaxConnTotal(this.connections)
+						.setMaxConnPerRoute(this.connections)
+						.build();
+				this.asyncClient = HttpAsyncClients.custom().setConnectionManager(this.asyncConnectionManager).build();
+			}
+			// One connection per route, with h2c prior knowledge for "http" URLs
+			case "h2c" -> this.asyncClient = HttpAsyncClients.customHttp2()
+					.setH2Config(H2Config.custom().setPushEnabled(false).build())
+					.build();
+			default -> throw new IllegalArgumentException("Unknown client type " + this.clientType);
+		}
+	}
+
+
+	static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+			options.put(pair[0], (pair.length > 1 ? pair[1] : "true"));
+		}
+		new LoadGenerator(options).run();
+	}
+
+
+	void run() throws Exception {
+		String sourceName = (this.asyncClient != null ? "async ActiveSource over " + this.clientType : this.sourceType + " ActiveSource");
+		logger.info("Opening " + this.connections + " streams with " + sourceName +
+				" over " + this.rampUp.toSeconds() + "s, for " + this.duration.toSeconds() + "s each");
+		if (this.asyncClient != null) {
+			this.asyncClient.start();
+		}
+		long startTime = System.nanoTime();
+		long delayNanos = this.rampUp.toNanos() / this.connections;
+		try (this.group; ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < this.connections; i++) {
+				executor.execute(this::consume);
+				if (delayNanos > 0) {
+					TimeUnit.NANOSECONDS.sleep(delayNanos);
+				}
+			}
+			logger.info("Opened " + this.connections + " streams, " + getConnectionStats());
+		}
+		finally {
+			if (this.asyncClient != null) {
+				this.asyncClient.close();
+			}
+		}
+		report(Duration.ofNanos(System.nanoTime() - startTime));
+	}
+
+	private String getConnectionStats() {
+		return switch (this.clientType) {
+			case "h2c" -> "multiplexed over one HTTP/2 connection";
+			case "async" -> "connections " + (this.asyncConnectionManager != null ? this.asyncConnectionManager.getTotalStats() : "");
+			default -> "connections " + this.connectionManager.getTotalStats();
+		};
+	}
+
+	private void consume() {
+		long startTime = System.nanoTime();
+		// Consume until the server completes the stream, as closing the response
+		// stream of the classic HttpClient reads it to the end
+		try (ActiveSource<ServerSentEvent<String>> source = connect()) {
+			long connectedTime = System.nanoTime();
+			if (this.asyncClient == null) {
+				this.connectTime.record(micros(connectedTime - startTime));
+			}
+			long lastEventTime = 0;
+			long events = 0;
+			while (source.receiveNext()) {
+				long now = System.nanoTime();
+				source.next();
+				if (events == 0) {
+					this.firstEventTime.record(micros(now - startTime));
+				}
+				else {
+					this.interEventTime.record(micros(now - lastEventTime));
+				}
+				lastEventTime = now;
+				events++;
+				this.eventCount.increment();
+			}
+			long elapsedNanos = System.nanoTime() - connectedTime;
+			this.streamThroughput.record(elapsedNanos > 0 ? events * 1_000_000_000 / elapsedNanos : 0);
+		}
+		catch (Exception ex) {
+			this.errorCount.increment();
+			logger.debug("Stream failed: " + ex);
+		}
+	}
+
+	private ActiveSource<ServerSentEvent<String>> connect() {
+		if (this.asyncClient != null) {
+			// Connects on the first receive
+			return new AsyncServerSentEventSource<>(this.asyncClient, this.url);
+		}
+		ServerSentEventSource<String> source = this.client.get().uri(this.path)
+				.exchangeForRequiredValue((request, response) -> {
+					if (response.getStatusCode().isError()) {
+						throw response.createException();
+					}
+					return new ServerSentEventSource<>(request.getURI(), response.getHeaders(), response.getBody());
+				}, false);
+		return switch (this.sourceType) {
+			case "structured" -> StructuredActiveSource.from(source);
+			case "executorService" -> ExecutorServiceActiveSource.from(source);
+			case "group" -> this.group.add(source);
+			default -> throw new IllegalArgumentException("Unknown source type " + this.sourceType);
+		};
+	}
+
+	private void report(Duration elapsed) {
+		long events = this.eventCount.sum();
+		logger.info(String.format("Received %d events in %ds, %.1f events/s, with %d failed streams",
+				events, elapsed.toSeconds(), events * 1000.0 / Math.max(1, elapsed.toMillis()), this.errorCount.sum()));
+		for (LatencyHistogram histogram : List.of(
+				this.connectTime, this.firstEventTime, this.interEventTime, this.streamThroughput)) {
+			logger.info(histogram.summary());
+		}
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+}
@@ -0,0 +1,230 @@
+package client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.jspecify.annotations.Nullable;
+import source.AbstractSource;
+
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.util.Assert;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Source that receives from a {@link ServerSentEventSource}, and when the
+ * connection is lost, reconnects with a {@code Last-Event-ID} header set to
+ * the id of the last received event, so the server can resume the stream
+ * where it left off. Consumers see one continuous stream across reconnects.
+ *
+ * <p>The delay before a reconnect is the {@code retry} value most recently
+ * sent by the server, or a default, and doubles with each consecutive failed
+ * attempt, up to a maximum. A random jitter of up to half the delay spreads
+ * out reconnects from many clients after a server restart.
+ *
+ * <p>A connection lost with an {@link IOException}, or a
+ * {@link ResourceAccessException} when connecting, leads to a reconnect.
+ * Other errors, e.g. an error response status, end the Source. When the
+ * server completes the stream, the Source also ends, unless
+ * {@link #setReconnectOnCompletion(boolean) reconnectOnCompletion} is set,
+ * in which case it reconnects after the same delay, so that a server that
+ * completes streams right away is not reconnected to in a tight loop.
+ *
+ * @param <T> the type of data in received events
+ */
+public class ReconnectingServerSentEventSource<T> extends AbstractSource<ServerSentEvent<T>> {
+
+	private final Connector<T> connector;
+
+	private @Nullable ServerSentEventSource<T> source;
+
+	private @Nullable String lastEventId;
+
+	private @Nullable EventIdCheckpoint checkpoint;
+
+	private Duration retry = Duration.ofSeconds(3);
+
+	private Duration maxRetry = Duration.ofSeconds(30);
+
+	private int maxAttempts = Integer.MAX_VALUE;
+
+	private boolean reconnectOnCompletion;
+
+	private int failedAttempts;
+
+
+	public ReconnectingServerSentEventSource(Connector<T> connector) {
+		Assert.notNull(connector, "Connector is required");
+		this.connector = connector;
+	}
+
+
+	/**
+	 * Set the id to send as {@code Last-Event-ID} on the first connect.
+	 */
+	public void setLastEventId(@Nullable String lastEventId) {
+		this.lastEventId = lastEventId;
+	}
+
+	/**
+	 * Return the id of the last received event, if any.
+	 */
+	public @Nullable String getLastEventId() {
+		return this.lastEventId;
+	}
+
+	/**
+	 * Set a checkpoint to load the initial {@code Last-Event-ID} from, unless
+	 * {@link #setLastEventId(String) set} explicitly. Consumers are expected
+	 * to {@link EventIdCheckpoint#update(String) update} the checkpoint as
+	 * they process events.
+	 */
+	public void setCheckpoint(@Nullable EventIdCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Set the delay before reconnecting, until the server sends a
+	 * {@code retry} value.
+	 * <p>By default, this is 3 seconds.
+	 */
+	public void setRetry(Duration retry) {
+		this.retry = retry;
+	}
+
+	/**
+	 * Set the maximum delay before reconnecting, as the delay doubles with
+	 * consecutive failed attempts.
+	 * <p>By default, this is 30 seconds.
+	 */
+	public void setMaxRetry(Duration maxRetry) {
+		this.maxRetry = maxRetry;
+	}
+
+	/**
+	 * Set the maximum number of consecutive failed attempts to connect, or to
+	 * receive after connecting, before giving up.
+	 * <p>By default, there is no limit.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		Assert.isTrue(maxAttempts > 0, "maxAttempts must be greater than 0");
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Whether to reconnect also when the server completes the stream.
+	 * <p>By default, this is {@code false}.
+	 */
+	public void setReconnectOnCompletion(boolean reconnectOnCompletion) {
+		this.reconnectOnCompletion = reconnectOnCompletion;
+	}
+
+
+	@Override
+	protected @Nullable ServerSentEvent<T> receiveItem() throws IOException, InterruptedException {
+		while (true) {
+			ServerSentEventSource<T> source = this.source;
+			if (source == null) {
+				source = connect();
+			}
+			try {
+				if (source.receiveNext()) {
+					ServerSentEvent<T> event = source.next();
+					this.failedAttempts = 0;
+					if (event.id() != null) {
+						this.lastEventId = event.id();
+					}
+					if (event.retry() != null) {
+						this.retry = event.retry();
+					}
+					return event;
+				}
+				closeSource();
+				if (!this.reconnectOnCompletion || !awaitReconnect(null)) {
+					return null;
+				}
+			}
+			catch (IOException ex) {
+				closeSource();
+				if (!awaitReconnect(ex)) {
+					throw ex;
+				}
+			}
+		}
+	}
+
+	private ServerSentEventSource<T> connect() throws IOException, InterruptedException {
+		if (this.lastEventId == null && this.checkpoint != null) {
+			this.lastEventId = this.checkpoint.load();
+		}
+		while (true) {
+			try {
+				this.source = this.connector.connect(this.lastEventId);
+				logger.debug("Connected with Last-Event-ID {}", this.lastEventId);
+				return this.source;
+			}
+			catch (IOException ex) {
+				if (!awaitReconnect(ex)) {
+					throw ex;
+				}
+			}
+			catch (ResourceAccessException ex) {
+				if (!awaitReconnect(ex)) {
+					throw ex;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wait before the next attempt, or return {@code false} to give up.
+	 * @param ex the failure, or {@code null} if the server completed the stream
+	 */
+	private boolean awaitReconnect(@Nullable Exception ex) throws InterruptedException {
+		this.failedAttempts++;
+		if (this.failedAttempts >= this.maxAttempts) {
+			return false;
+		}
+		long delay = Math.min(this.retry.toMillis() << Math.min(this.failedAttempts - 1, 20), this.maxRetry.toMillis());
+		long jitter = (delay > 1 ? ThreadLocalRandom.current().nextLong(delay / 2) : 0);
+		logger.debug("Reconnecting in {} ms after: {}", delay - jitter, (ex != null ? ex.toString() : "Stream completed"));
+		Thread.sleep(delay - jitter);
+		return true;
+	}
+
+	private void closeSource() {
+		ServerSentEventSource<T> source = this.source;
+		if (source != null) {
+			this.source = null;
+			source.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		closeSource();
+	}
+
+	@Override
+	public String toString() {
+		return "ReconnectingServerSentEventSource[lastEventId=" + this.lastEventId + ", " + this.source + "]";
+	}
+
+
+	/**
+	 * Contract to open a connection and create a {@link ServerSentEventSource}
+	 * for the response stream.
+	 * @param <T> the type of data in received events
+	 */
+	@FunctionalInterface
+	public interface Connector<T> {
+
+		/**
+		 * Connect, and send the given id as {@code Last-Event-ID}, if not null.
+		 */
+		ServerSentEventSource<T> connect(@Nullable String lastEventId) throws IOException;
+
+	}
+
+}
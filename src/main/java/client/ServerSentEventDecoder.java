@@ -0,0 +1,96 @@
+package client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.HttpMessageConverters;
+
+/**
+ * Creates a {@link ServerSentEvent} from the fields of the last event parsed
+ * by a {@link ServerSentEventParser}, converting the data to the target type
+ * for the event name. Shared by Sources that read from a blocking stream, and
+ * Sources that are fed input asynchronously.
+ *
+ * <p>An event without {@code data} lines, e.g. with only an {@code id} or
+ * {@code retry} field, is still dispatched. For a {@code String} target type,
+ * its data is the empty string, as for an event with an empty {@code data}
+ * line, while for other target types there is nothing to convert, and its
+ * data is {@code null}.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class ServerSentEventDecoder<T> {
+
+	private static final int MAX_EVENT_TYPES = 256;
+
+
+	private final HttpMessageConverterDelegate converterDelegate;
+
+	private final Function<String, ResolvableType> typeResolver;
+
+	private final Function<String, MediaType> contentTypeResolver;
+
+	private final Map<String, EventType> eventTypes = new HashMap<>();
+
+
+	ServerSentEventDecoder(
+			HttpMessageConverters converters, Function<String, ResolvableType> typeResolver,
+			Function<String, MediaType> contentTypeResolver) {
+
+		this.converterDelegate = new HttpMessageConverterDelegate(converters);
+		this.typeResolver = typeResolver;
+		this.contentTypeResolver = contentTypeResolver;
+	}
+
+
+	@SuppressWarnings("unchecked")
+	ServerSentEvent<T> decode(ServerSentEventParser parser) {
+		ServerSentEvent.Builder<T> eventBuilder = ServerSentEvent.builder();
+		String eventType = parser.getEventType();
+		if (eventType != null) {
+			eventBuilder.event(eventType);
+		}
+		if (parser.getId() != null) {
+			eventBuilder.id(parser.getId());
+		}
+		if (parser.getRetry() != null) {
+			eventBuilder.retry(parser.getRetry());
+		}
+		EventType type = getEventType(eventType != null ? eventType : "");
+		if (type.isString()) {
+			// Empty without data lines
+			eventBuilder.data((T) parser.getDataAsString());
+		}
+		else if (parser.hasData()) {
+			eventBuilder.data(this.converterDelegate.readWithMessageConverter(
+					parser.getDataBuffer(), 0, parser.getDataLength(), type.targetType(), type.contentType()));
+		}
+		return eventBuilder.build();
+	}
+
+	/**
+	 * Return the target type and content type for the given event name,
+	 * memoizing the results of the resolvers for a limited number of names.
+	 */
+	private EventType getEventType(String name) {
+		EventType type = this.eventTypes.get(name);
+		if (type == null) {
+			ResolvableType targetType = this.typeResolver.apply(name);
+			type = new EventType(targetType, this.contentTypeResolver.apply(name),
+					targetType.getRawClass() == String.class);
+			if (this.eventTypes.size() < MAX_EVENT_TYPES) {
+				this.eventTypes.put(name, type);
+			}
+		}
+		return type;
+	}
+
+
+	private record EventType(ResolvableType targetType, MediaType contentType, boolean isString) {
+	}
+
+}
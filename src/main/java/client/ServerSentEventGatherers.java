@@ -0,0 +1,111 @@
+package client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Gatherer;
+
+import source.SourceGatherers;
+
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.util.Assert;
+
+/**
+ * {@link Gatherer} implementations for streams of {@link ServerSentEvent}s,
+ * complementing the windows in {@link SourceGatherers}.
+ */
+public abstract class ServerSentEventGatherers {
+
+	/**
+	 * The event type of events without an {@code event} field.
+	 */
+	public static final String DEFAULT_EVENT_TYPE = "message";
+
+
+	/**
+	 * Collect events in batches per event type, each of which ends when it
+	 * reaches the given size, or spans the given duration. Batches of
+	 * different event types are emitted independently, so the order of events
+	 * is preserved within each batch, but not across batches. Batches that
+	 * have timed out are checked for on every event, and when the stream ends.
+	 */
+	public static <T> Gatherer<ServerSentEvent<T>, ?, List<ServerSentEvent<T>>> groupByEventType(
+			int maxSize, Duration duration) {
+
+		Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+		Assert.isTrue(!duration.isNegative() && !duration.isZero(), "Duration must be positive");
+		long durationNanos = duration.toNanos();
+		return Gatherer.<ServerSentEvent<T>, Map<String, Batch<T>>, List<ServerSentEvent<T>>>ofSequential(
+				LinkedHashMap::new,
+				Gatherer.Integrator.ofGreedy((batches, event, downstream) -> {
+					long now = System.nanoTime();
+					Iterator<Batch<T>> iterator = batches.values().iterator();
+					while (iterator.hasNext()) {
+						Batch<T> batch = iterator.next();
+						if (now - batch.startTime >= durationNanos) {
+							iterator.remove();
+							if (!downstream.push(batch.events)) {
+								return false;
+							}
+						}
+					}
+					String type = (event.event() != null ? event.event() : DEFAULT_EVENT_TYPE);
+					Batch<T> batch = batches.computeIfAbsent(type, _ -> new Batch<>(now));
+					batch.events.add(event);
+					if (batch.events.size() >= maxSize) {
+						batches.remove(type);
+						return downstream.push(batch.events);
+					}
+					return true;
+				}),
+				(batches, downstream) -> {
+					for (Batch<T> batch : batches.values()) {
+						if (!downstream.push(batch.events)) {
+							break;
+						}
+					}
+				});
+	}
+
+	/**
+	 * Drop events with an {@code id} that was seen among the given number of
+	 * most recent ids, e.g. events replayed by a server after a reconnect with
+	 * {@code Last-Event-ID}. Events without an id are never dropped.
+	 */
+	public static <T> Gatherer<ServerSentEvent<T>, ?, ServerSentEvent<T>> distinctById(int maxIds) {
+		Assert.isTrue(maxIds > 0, "maxIds must be greater than 0");
+		return Gatherer.<ServerSentEvent<T>, Map<String, Boolean>, ServerSentEvent<T>>ofSequential(
+				() -> new LinkedHashMap<>() {
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+						return (size() > maxIds);
+					}
+				},
+				Gatherer.Integrator.ofGreedy((seenIds, event, downstream) -> {
+					String id = event.id();
+					if (id != null && seenIds.putIfAbsent(id, Boolean.TRUE) != null) {
+						return true;
+					}
+					return downstream.push(event);
+				}));
+	}
+
+
+	/**
+	 * Events of one type, and the time of the first event.
+	 */
+	private static final class Batch<T> {
+
+		final List<ServerSentEvent<T>> events = new ArrayList<>();
+
+		final long startTime;
+
+		Batch(long startTime) {
+			this.startTime = startTime;
+		}
+	}
+
+}
@@ -0,0 +1,414 @@
+package client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Parser for the {@code text/event-stream} format that works directly on
+ * bytes. Line boundaries (LF, CR, or CRLF) are found, and field names are
+ * matched, without decoding to characters first. The {@code data} of an
+ * event is accumulated as bytes, with multiple lines joined by LF, and is
+ * decoded only when the event is converted, directly from the data buffer.
+ * A UTF-8 byte order mark at the start of the stream is skipped.
+ *
+ * <p>Input is either pulled from an {@link InputStream} via
+ * {@link #fill(InputStream)}, or pushed via {@link #feed(ByteBuffer)}. After
+ * that, {@link #parseNext()} parses buffered lines until an event is complete,
+ * and the accessor methods then expose the fields of that event, until the
+ * next call to {@code parseNext()}.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class ServerSentEventParser {
+
+	private static final byte LF = '\n';
+
+	private static final byte CR = '\r';
+
+	private static final byte COLON = ':';
+
+	private static final byte SPACE = ' ';
+
+	private static final byte[] DATA = ascii("data");
+
+	private static final byte[] EVENT = ascii("event");
+
+	private static final byte[] ID = ascii("id");
+
+	private static final byte[] RETRY = ascii("retry");
+
+	private static final byte[] BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+
+	private byte[] buffer;
+
+	private int position;
+
+	private int limit;
+
+	private long inputByteCount;
+
+	private boolean skipLineFeed;
+
+	private boolean byteOrderMarkChecked;
+
+	private boolean eventComplete;
+
+	private boolean hasFields;
+
+	private byte[] data = new byte[256];
+
+	private int dataLength;
+
+	private boolean hasData;
+
+	private @Nullable String eventType;
+
+	private @Nullable String id;
+
+	private @Nullable Duration retry;
+
+
+	ServerSentEventParser() {
+		this(8192);
+	}
+
+	ServerSentEventParser(int bufferSize) {
+		this.buffer = new byte[bufferSize];
+	}
+
+
+	/**
+	 * Read more input from the given stream into the buffer.
+	 * @return {@code false} if the end of the stream was reached
+	 */
+	boolean fill(InputStream inputStream) throws IOException {
+		ensureWritable(1);
+		int count = inputStream.read(this.buffer, this.limit, this.buffer.length - this.limit);
+		if (count == -1) {
+			return false;
+		}
+		this.limit += count;
+		this.inputByteCount += count;
+		return true;
+	}
+
+	/**
+	 * Copy the remaining bytes of the given buffer into the input buffer.
+	 */
+	void feed(ByteBuffer input) {
+		int count = input.remaining();
+		ensureWritable(count);
+		input.get(this.buffer, this.limit, count);
+		this.limit += count;
+		this.inputByteCount += count;
+	}
+
+	private void ensureWritable(int count) {
+		if (this.limit + count <= this.buffer.length) {
+			return;
+		}
+		int unread = this.limit - this.position;
+		if (unread + count > this.buffer.length) {
+			// A line longer than the buffer
+			byte[] newBuffer = new byte[Math.max(this.buffer.length * 2, unread + count)];
+			System.arraycopy(this.buffer, this.position, newBuffer, 0, unread);
+			this.buffer = newBuffer;
+		}
+		else {
+			System.arraycopy(this.buffer, this.position, this.buffer, 0, unread);
+		}
+		this.position = 0;
+		this.limit = unread;
+	}
+
+	/**
+	 * Return the total number of bytes of input so far.
+	 */
+	long getInputByteCount() {
+		return this.inputByteCount;
+	}
+
+	/**
+	 * Whether there is input in the buffer that has not been parsed yet.
+	 */
+	boolean hasBufferedInput() {
+		return (this.position < this.limit);
+	}
+
+	/**
+	 * Whether an event has been partially parsed, or a line partially received,
+	 * which means that the input ended in the middle of an event.
+	 */
+	boolean hasPartialEvent() {
+		return (!this.eventComplete && (this.hasFields || hasBufferedInput()));
+	}
+
+	/**
+	 * Whether the buffered input completes an event, so that the next call to
+	 * {@link #parseNext()} returns {@code true}. Unlike
+	 * {@link #hasBufferedInput()}, this is {@code false} for input with only
+	 * part of the next event, or only comments and blank lines. The input is
+	 * scanned, but not consumed.
+	 */
+	boolean hasCompleteEvent() {
+		boolean fields = (!this.eventComplete && this.hasFields);
+		int byteOrderMarkLength = getByteOrderMarkLength();
+		if (byteOrderMarkLength == -1) {
+			return false;
+		}
+		int position = this.position + byteOrderMarkLength;
+		if (this.skipLineFeed && position < this.limit && this.buffer[position] == LF) {
+			position++;
+		}
+		for (int i = position; i < this.limit; i++) {
+			byte b = this.buffer[i];
+			if (b != LF && b != CR) {
+				continue;
+			}
+			if (i == position) {
+				if (fields) {
+					return true;
+				}
+			}
+			else {
+				fields |= isField(position, i);
+			}
+			position = i + 1;
+			if (b == CR && position < this.limit && this.buffer[position] == LF) {
+				position++;
+				i++;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Parse buffered lines until the end of an event.
+	 * @return {@code true} if an event is complete, or {@code false} if more
+	 * input is needed
+	 */
+	boolean parseNext() {
+		if (this.eventComplete) {
+			resetEvent();
+		}
+		if (!this.byteOrderMarkChecked) {
+			int byteOrderMarkLength = getByteOrderMarkLength();
+			if (byteOrderMarkLength == -1) {
+				return false;
+			}
+			this.position += byteOrderMarkLength;
+			this.byteOrderMarkChecked = true;
+		}
+		while (true) {
+			if (this.skipLineFeed && this.position < this.limit) {
+				if (this.buffer[this.position] == LF) {
+					this.position++;
+				}
+				this.skipLineFeed = false;
+			}
+			int end = findLineEnd();
+			if (end == -1) {
+				return false;
+			}
+			int start = this.position;
+			this.position = end + 1;
+			this.skipLineFeed = (this.buffer[end] == CR);
+			if (start == end) {
+				if (this.hasFields) {
+					this.eventComplete = true;
+					return true;
+				}
+				continue;
+			}
+			parseLine(start, end);
+		}
+	}
+
+	/**
+	 * Return the length of the byte order mark at the start of the stream,
+	 * 0 if there is none, or it was already skipped, or -1 if more input is
+	 * needed to tell.
+	 */
+	private int getByteOrderMarkLength() {
+		if (this.byteOrderMarkChecked) {
+			return 0;
+		}
+		int length = Math.min(this.limit - this.position, BYTE_ORDER_MARK.length);
+		if (!Arrays.equals(this.buffer, this.position, this.position + length, BYTE_ORDER_MARK, 0, length)) {
+			return 0;
+		}
+		return (length == BYTE_ORDER_MARK.length ? length : -1);
+	}
+
+	private int findLineEnd() {
+		for (int i = this.position; i < this.limit; i++) {
+			byte b = this.buffer[i];
+			if (b == LF || b == CR) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void parseLine(int start, int end) {
+		if (this.buffer[start] == COLON) {
+			return; // comment
+		}
+		int colon = start;
+		while (colon < end && this.buffer[colon] != COLON) {
+			colon++;
+		}
+		int valueStart = Math.min(colon + 1, end);
+		if (valueStart < end && this.buffer[valueStart] == SPACE) {
+			valueStart++;
+		}
+		int nameLength = colon - start;
+		if (matches(DATA, start, nameLength)) {
+			appendData(valueStart, end);
+		}
+		else if (matches(EVENT, start, nameLength)) {
+			this.eventType = decode(valueStart, end);
+			this.hasFields = true;
+		}
+		else if (matches(ID, start, nameLength)) {
+			if (indexOf((byte) 0, valueStart, end) == -1) {
+				this.id = decode(valueStart, end);
+				this.hasFields = true;
+			}
+		}
+		else if (matches(RETRY, start, nameLength)) {
+			long millis = parseDigits(valueStart, end);
+			if (millis != -1) {
+				this.retry = Duration.ofMillis(millis);
+				this.hasFields = true;
+			}
+		}
+	}
+
+	/**
+	 * Whether {@link #parseLine} would set a field for the given line.
+	 */
+	private boolean isField(int start, int end) {
+		if (this.buffer[start] == COLON) {
+			return false;
+		}
+		int colon = start;
+		while (colon < end && this.buffer[colon] != COLON) {
+			colon++;
+		}
+		int valueStart = Math.min(colon + 1, end);
+		if (valueStart < end && this.buffer[valueStart] == SPACE) {
+			valueStart++;
+		}
+		int nameLength = colon - start;
+		return (matches(DATA, start, nameLength) || matches(EVENT, start, nameLength) ||
+				(matches(ID, start, nameLength) && indexOf((byte) 0, valueStart, end) == -1) ||
+				(matches(RETRY, start, nameLength) && parseDigits(valueStart, end) != -1));
+	}
+
+	private boolean matches(byte[] name, int start, int length) {
+		return (length == name.length && Arrays.equals(this.buffer, start, start + length, name, 0, length));
+	}
+
+	private void appendData(int start, int end) {
+		int length = end - start;
+		int required = this.dataLength + length + (this.hasData ? 1 : 0);
+		if (required > this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, required));
+		}
+		if (this.hasData) {
+			this.data[this.dataLength++] = LF;
+		}
+		System.arraycopy(this.buffer, start, this.data, this.dataLength, length);
+		this.dataLength += length;
+		this.hasData = true;
+		this.hasFields = true;
+	}
+
+	private int indexOf(byte value, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (this.buffer[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private long parseDigits(int start, int end) {
+		if (start == end || end - start > 18) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			byte b = this.buffer[i];
+			if (b < '0' || b > '9') {
+				return -1;
+			}
+			value = value * 10 + (b - '0');
+		}
+		return value;
+	}
+
+	private String decode(int start, int end) {
+		return new String(this.buffer, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	private void resetEvent() {
+		this.eventComplete = false;
+		this.hasFields = false;
+		this.dataLength = 0;
+		this.hasData = false;
+		this.eventType = null;
+		this.id = null;
+		this.retry = null;
+	}
+
+
+	// Accessors for the fields of the last complete event
+
+	boolean hasData() {
+		return this.hasData;
+	}
+
+	/**
+	 * Return the buffer with the data of the event, valid from index 0 up to
+	 * {@link #getDataLength()}, and until the next call to {@link #parseNext()}.
+	 */
+	byte[] getDataBuffer() {
+		return this.data;
+	}
+
+	int getDataLength() {
+		return this.dataLength;
+	}
+
+	String getDataAsString() {
+		return new String(this.data, 0, this.dataLength, StandardCharsets.UTF_8);
+	}
+
+	@Nullable String getEventType() {
+		return this.eventType;
+	}
+
+	@Nullable String getId() {
+		return this.id;
+	}
+
+	@Nullable Duration getRetry() {
+		return this.retry;
+	}
+
+
+	private static byte[] ascii(String value) {
+		return value.getBytes(StandardCharsets.US_ASCII);
+	}
+
+}
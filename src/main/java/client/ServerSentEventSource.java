@@ -1,27 +1,39 @@
 package client;
 
-import java.io.BufferedReader;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.util.Locale;
 import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jspecify.annotations.Nullable;
 import source.AbstractSource;
+import source.SourceMetrics;
 
 import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.converter.HttpMessageConverters;
-import org.springframework.util.StringUtils;
-
-
+import org.springframework.util.Assert;
+
+/**
+ * Source that parses Server-Sent Events from a response stream, and converts
+ * the data of each event.
+ *
+ * <p>If the response headers are passed in, and the response has a
+ * {@code Content-Encoding} of {@code gzip} or {@code deflate} that the HTTP
+ * client did not already decode, the stream is decompressed as it is read.
+ * The server is expected to flush the compressor after each event, so each
+ * event can be decompressed as soon as it arrives.
+ *
+ * @param <T> the type of data in received events
+ */
 public class ServerSentEventSource<T> extends AbstractSource<ServerSentEvent<T>> {
 
 	private static final Logger logger = LogManager.getLogger(ServerSentEventSource.class);
@@ -29,17 +41,31 @@ public class ServerSentEventSource<T> extends AbstractSource<ServerSentEvent<T>>
 
 	private final URI url;
 
-	private final BufferedReader reader;
+	private final InputStream inputStream;
+
+	private final @Nullable String contentEncoding;
+
+	private @Nullable InputStream decodedStream; // accessed by receiver only
+
+	private final ServerSentEventParser parser = new ServerSentEventParser();
+
+	private final ServerSentEventDecoder<T> decoder; // accessed by receiver only
 
-	private final HttpMessageConverterDelegate converterDelegate;
+	private @Nullable SourceMetrics metrics;
 
-	private final Function<String, ResolvableType> typeResolver;
+	private long lastInputByteCount; // accessed by receiver only
 
-	private final Function<String, MediaType> contentTypeResolver;
+	private long parseNanos; // accessed by receiver only
+
+	private long convertNanos; // accessed by receiver only
 
 
 	public ServerSentEventSource(URI url, InputStream inputStream) {
-		this(url, inputStream, HttpMessageConverters.forClient().build(),
+		this(url, HttpHeaders.EMPTY, inputStream);
+	}
+
+	public ServerSentEventSource(URI url, HttpHeaders responseHeaders, InputStream responseBody) {
+		this(url, responseHeaders, responseBody, HttpMessageConverters.forClient().build(),
 				_ -> ResolvableType.forClass(String.class), _ -> MediaType.TEXT_PLAIN);
 	}
 
@@ -47,72 +73,141 @@ public class ServerSentEventSource<T> extends AbstractSource<ServerSentEvent<T>>
 			URI url, InputStream responseBody, HttpMessageConverters converters,
 			Function<String, ResolvableType> typeResolver, Function<String, MediaType> contentTypeResolver) {
 
+		this(url, HttpHeaders.EMPTY, responseBody, converters, typeResolver, contentTypeResolver);
+	}
+
+	public ServerSentEventSource(
+			URI url, HttpHeaders responseHeaders, InputStream responseBody, HttpMessageConverters converters,
+			Function<String, ResolvableType> typeResolver, Function<String, MediaType> contentTypeResolver) {
+
 		this.url = url;
-		this.reader = new BufferedReader(new InputStreamReader(responseBody, StandardCharsets.UTF_8));
-		this.converterDelegate = new HttpMessageConverterDelegate(converters);
-		this.typeResolver = typeResolver;
-		this.contentTypeResolver = contentTypeResolver;
+		this.inputStream = responseBody;
+		this.contentEncoding = initContentEncoding(responseHeaders);
+		this.decoder = new ServerSentEventDecoder<>(converters, typeResolver, contentTypeResolver);
 	}
 
+	private static @Nullable String initContentEncoding(HttpHeaders headers) {
+		String value = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+		if (value == null) {
+			return null;
+		}
+		String encoding = value.trim().toLowerCase(Locale.ROOT);
+		if (encoding.isEmpty() || encoding.equals("identity")) {
+			return null;
+		}
+		Assert.isTrue(encoding.equals("gzip") || encoding.equals("x-gzip") || encoding.equals("deflate"),
+				() -> "Unsupported Content-Encoding \"" + value + "\"");
+		return encoding;
+	}
 
-	@SuppressWarnings("unchecked")
-	@Override
-	protected @Nullable ServerSentEvent<T> receiveItem() throws IOException {
 
-		ServerSentEvent.Builder<T> eventBuilder = ServerSentEvent.builder();
-		StringBuilder sb = new StringBuilder();
-		String eventType = "";
-		boolean empty = true;
+	/**
+	 * Configure a listener for the number of bytes read, and the time spent
+	 * parsing and converting, per event.
+	 * <p>By default, this is not set, and nothing is measured.
+	 */
+	public void setMetrics(@Nullable SourceMetrics metrics) {
+		this.metrics = metrics;
+	}
 
-		while (true) {
-			String line = this.reader.readLine();
-			if (line == null) {
-				if (!empty) {
-					throw new EOFException("Partial event: " + eventBuilder.build());
+
+	@Override
+	protected @Nullable ServerSentEvent<T> receiveItem() throws IOException {
+		SourceMetrics metrics = this.metrics;
+		if (metrics != null) {
+			return receiveItemWithMetrics(metrics);
+		}
+		while (!this.parser.parseNext()) {
+			if (!this.parser.fill(getDecodedStream())) {
+				if (this.parser.hasPartialEvent()) {
+					throw new EOFException("Partial event");
 				}
 				return null;
 			}
+		}
+		return createEvent();
+	}
 
-			// End of event
-			if (!StringUtils.hasText(line)) {
-				ResolvableType targetType = this.typeResolver.apply(eventType);
-				MediaType contentType = this.contentTypeResolver.apply(eventType);
-				T t;
-				if (targetType.getRawClass() == String.class) {
-					t = (T) sb.toString();
-				}
-				else {
-					t = this.converterDelegate.readWithMessageConverter(
-							sb.toString().getBytes(StandardCharsets.UTF_8), targetType, contentType);
+	/**
+	 * Variant of {@link #receiveItem()} that measures parse time without I/O.
+	 * With a {@code Content-Encoding}, byte counts are after decompression.
+	 */
+	private @Nullable ServerSentEvent<T> receiveItemWithMetrics(SourceMetrics metrics) throws IOException {
+		this.parseNanos = 0;
+		this.convertNanos = 0;
+		while (true) {
+			long startTime = System.nanoTime();
+			boolean parsed = this.parser.parseNext();
+			this.parseNanos += System.nanoTime() - startTime;
+			if (parsed) {
+				break;
+			}
+			if (!this.parser.fill(getDecodedStream())) {
+				if (this.parser.hasPartialEvent()) {
+					throw new EOFException("Partial event");
 				}
-				return eventBuilder.data(t).build();
+				return null;
 			}
+		}
+		ServerSentEvent<T> event = createEvent();
+		long inputByteCount = this.parser.getInputByteCount();
+		metrics.itemRead(this, (int) (inputByteCount - this.lastInputByteCount), this.parseNanos, this.convertNanos);
+		this.lastInputByteCount = inputByteCount;
+		return event;
+	}
 
-			// Ignore line
-			int index = line.indexOf(':');
-			if (index == 0) {
-				continue;
+	/**
+	 * Return the stream to parse, decompressing the response stream if needed.
+	 * This is created on first use, as {@link GZIPInputStream} blocks to read
+	 * the gzip header.
+	 */
+	private InputStream getDecodedStream() throws IOException {
+		InputStream stream = this.decodedStream;
+		if (stream == null) {
+			if (this.contentEncoding == null) {
+				stream = this.inputStream;
 			}
-
-			empty = false;
-
-			String field = (index != -1 ? line.substring(0, index) : line);
-			String value = (index != -1 ? line.substring(index + 1) : "");
-
-			switch (field) {
-				case "event":
-					eventBuilder.event(value);
-					break;
-				case "data":
-					sb.append(value);
-					break;
-				case "id":
-					eventBuilder.id(value);
-					break;
-				case "retry":
-					eventBuilder.retry(Duration.ofMillis(Long.parseLong(value)));
-					break;
+			else if (this.contentEncoding.equals("deflate")) {
+				stream = new InflaterInputStream(this.inputStream);
+			}
+			else {
+				stream = new GZIPInputStream(this.inputStream);
 			}
+			this.decodedStream = stream;
+		}
+		return stream;
+	}
+
+	private ServerSentEvent<T> createEvent() {
+		if (this.metrics == null) {
+			return this.decoder.decode(this.parser);
+		}
+		long startTime = System.nanoTime();
+		ServerSentEvent<T> event = this.decoder.decode(this.parser);
+		this.convertNanos = System.nanoTime() - startTime;
+		return event;
+	}
+
+	/**
+	 * Whether input that has been read, but not parsed yet, completes the
+	 * next event, so that receiving it does not block on the stream.
+	 */
+	@Override
+	public boolean canReceiveWithoutBlocking() {
+		return this.parser.hasCompleteEvent();
+	}
+
+	/**
+	 * Close the Source, and the underlying response stream.
+	 */
+	@Override
+	public void close() {
+		super.close();
+		try {
+			this.inputStream.close();
+		}
+		catch (IOException ex) {
+			logger.debug("Failed to close response stream", ex);
 		}
 	}
 
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * Timer for a large number of coarse-grained timeouts, such as heartbeats
+ * and idle timeouts of many open connections.
+ *
+ * <p>Timeouts are kept in a wheel of buckets, one per tick. A single thread
+ * advances the wheel once per tick, and hands expired tasks to an executor,
+ * virtual threads by default, so that a slow task does not delay the wheel.
+ * Scheduling and cancelling are O(1): scheduled tasks are added to a
+ * concurrent queue that the timer thread moves into the wheel on the next
+ * tick, and cancelled tasks are removed when the wheel reaches their bucket.
+ * Timeouts are accurate to one tick.
+ */
+public class HashedWheelTimer implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger(HashedWheelTimer.class);
+
+
+	private final long tickNanos;
+
+	private final List<TimeoutTask>[] wheel;
+
+	private final int mask;
+
+	private final Executor executor;
+
+	private final Queue<TimeoutTask> pending = new ConcurrentLinkedQueue<>();
+
+	private final long startTime;
+
+	private final Thread thread;
+
+	private long tick; // accessed by timer thread only
+
+	private volatile boolean closed;
+
+
+	public HashedWheelTimer() {
+		this(Duration.ofMillis(100), 512);
+	}
+
+	public HashedWheelTimer(Duration tickDuration, int ticksPerWheel) {
+		this(tickDuration, ticksPerWheel, new VirtualThreadTaskExecutor("timer-"));
+	}
+
+	/**
+	 * Create a timer.
+	 * @param tickDuration the duration of a tick, and the accuracy of timeouts
+	 * @param ticksPerWheel the number of buckets in the wheel, rounded up to a
+	 * power of 2
+	 * @param executor the executor to run expired tasks with
+	 */
+	@SuppressWarnings("unchecked")
+	public HashedWheelTimer(Duration tickDuration, int ticksPerWheel, Executor executor) {
+		Assert.isTrue(tickDuration.toNanos() >= 1_000_000, "tickDuration must be at least 1 ms");
+		Assert.isTrue(ticksPerWheel > 0 && ticksPerWheel <= (1 << 20), "ticksPerWheel must be in the range 1 to 2^20");
+		Assert.notNull(executor, "Executor is required");
+		int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+		size = Math.max(size, 1);
+		this.tickNanos = tickDuration.toNanos();
+		this.wheel = new List[size];
+		for (int i = 0; i < size; i++) {
+			this.wheel[i] = new ArrayList<>();
+		}
+		this.mask = size - 1;
+		this.executor = executor;
+		this.startTime = System.nanoTime();
+		this.thread = Thread.ofPlatform().name("hashed-wheel-timer").daemon().start(this::run);
+	}
+
+
+	/**
+	 * Run the given task once, after the given delay.
+	 */
+	public Timeout schedule(Runnable task, Duration delay) {
+		return schedule(task, delay, 0);
+	}
+
+	/**
+	 * Run the given task periodically, first after the given period.
+	 */
+	public Timeout scheduleAtFixedRate(Runnable task, Duration period) {
+		Assert.isTrue(period.toNanos() >= this.tickNanos, "Period must be at least one tick");
+		return schedule(task, period, period.toNanos());
+	}
+
+	private Timeout schedule(Runnable task, Duration delay, long periodNanos) {
+		Assert.notNull(task, "Task is required");
+		Assert.state(!this.closed, "Timer is closed");
+		long deadline = System.nanoTime() - this.startTime + Math.max(delay.toNanos(), 0);
+		TimeoutTask timeout = new TimeoutTask(task, deadline, periodNanos);
+		this.pending.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Return the number of timeouts not yet moved into the wheel.
+	 */
+	public int getPendingCount() {
+		return this.pending.size();
+	}
+
+	/**
+	 * Stop the timer thread. Timeouts that have not expired are discarded.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.thread.interrupt();
+	}
+
+
+	private void run() {
+		while (!this.closed) {
+			if (!awaitTick()) {
+				break;
+			}
+			transferPending();
+			expire(this.wheel[(int) (this.tick & this.mask)]);
+			this.tick++;
+		}
+		this.pending.clear();
+	}
+
+	private boolean awaitTick() {
+		long deadline = this.tickNanos * (this.tick + 1);
+		while (true) {
+			long remaining = deadline - (System.nanoTime() - this.startTime);
+			if (remaining <= 0) {
+				return true;
+			}
+			LockSupport.parkNanos(this, remaining);
+			if (Thread.interrupted() && this.closed) {
+				return false;
+			}
+		}
+	}
+
+	private void transferPending() {
+		TimeoutTask timeout;
+		while ((timeout = this.pending.poll()) != null) {
+			if (!timeout.isCancelled()) {
+				addToWheel(timeout);
+			}
+		}
+	}
+
+	private void addToWheel(TimeoutTask timeout) {
+		long expiryTick = timeout.deadline / this.tickNanos;
+		timeout.remainingRounds = (expiryTick - this.tick) / this.wheel.length;
+		this.wheel[(int) (Math.max(expiryTick, this.tick) & this.mask)].add(timeout);
+	}
+
+	private void expire(List<TimeoutTask> bucket) {
+		List<TimeoutTask> rescheduled = null;
+		int size = bucket.size();
+		int retained = 0;
+		for (int i = 0; i < size; i++) {
+			TimeoutTask timeout = bucket.get(i);
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			if (timeout.remainingRounds > 0) {
+				timeout.remainingRounds--;
+				bucket.set(retained++, timeout);
+				continue;
+			}
+			if (timeout.expire(this.executor)) {
+				timeout.deadline += timeout.periodNanos;
+				rescheduled = (rescheduled != null ? rescheduled : new ArrayList<>());
+				rescheduled.add(timeout);
+			}
+		}
+		bucket.subList(retained, size).clear();
+		if (rescheduled != null) {
+			rescheduled.forEach(this::addToWheel);
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return "HashedWheelTimer[tick=" + Duration.ofNanos(this.tickNanos) + ", buckets=" + this.wheel.length + "]";
+	}
+
+
+	/**
+	 * Handle to a scheduled task.
+	 */
+	public interface Timeout {
+
+		/**
+		 * Cancel the task, unless it has already expired.
+		 * @return {@code true} if the task was cancelled
+		 */
+		boolean cancel();
+
+		/**
+		 * Whether the task has been cancelled.
+		 */
+		boolean isCancelled();
+
+	}
+
+
+	private static final class TimeoutTask implements Timeout {
+
+		private static final int INIT = 0;
+
+		private static final int CANCELLED = 1;
+
+		private static final int EXPIRED = 2;
+
+		private final Runnable task;
+
+		private final long periodNanos;
+
+		private final AtomicInteger state = new AtomicInteger(INIT);
+
+		long deadline; // accessed by timer thread only, after scheduling
+
+		long remainingRounds; // accessed by timer thread only
+
+		TimeoutTask(Runnable task, long deadline, long periodNanos) {
+			this.task = task;
+			this.deadline = deadline;
+			this.periodNanos = periodNanos;
+		}
+
+		@Override
+		public boolean cancel() {
+			return this.state.compareAndSet(INIT, CANCELLED);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return (this.state.get() == CANCELLED);
+		}
+
+		/**
+		 * Run the task with the given executor.
+		 * @return whether the task is periodic and should be rescheduled
+		 */
+		boolean expire(Executor executor) {
+			boolean periodic = (this.periodNanos > 0);
+			if (!periodic && !this.state.compareAndSet(INIT, EXPIRED)) {
+				return false;
+			}
+			try {
+				executor.execute(this::runTask);
+			}
+			catch (RuntimeException ex) {
+				logger.warn("Failed to submit timer task " + this.task, ex);
+			}
+			return periodic;
+		}
+
+		private void runTask() {
+			try {
+				this.task.run();
+			}
+			catch (Throwable ex) {
+				logger.warn("Timer task " + this.task + " failed", ex);
+			}
+		}
+	}
+
+}
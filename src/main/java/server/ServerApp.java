@@ -4,7 +4,9 @@ import java.io.File;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http2.Http2Protocol;
 
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
 import org.springframework.web.servlet.DispatcherServlet;
@@ -20,6 +22,26 @@ public class ServerApp {
 		server.setHostname("0.0.0.0");
 		server.setPort(8080);
 
+		// HTTP/2 over cleartext, via prior knowledge or Upgrade, to multiplex many SSE streams
+		// over one connection, each with its own flow-control window. Streams of async requests,
+		// such as SSE, only hold a container thread while executing, which is bounded separately.
+		Http2Protocol http2 = new Http2Protocol();
+		http2.setMaxConcurrentStreams(Integer.getInteger("server.http2.max-concurrent-streams", 10_000));
+		http2.setMaxConcurrentStreamExecution(Integer.getInteger("server.http2.max-concurrent-stream-execution", 200));
+
+		// Gzip responses, and for SSE, flush the compressor with each event. HTTP/2 streams
+		// are compressed by the upgrade protocol, which does not inherit the connector settings.
+		if (Boolean.parseBoolean(System.getProperty("server.compression", "true"))) {
+			String mimeTypes = "text/event-stream,application/json,text/plain";
+			Connector connector = server.getConnector();
+			connector.setProperty("compression", "on");
+			connector.setProperty("compressibleMimeType", mimeTypes);
+			http2.setCompression("on");
+			http2.setCompressibleMimeType(mimeTypes);
+		}
+
+		server.getConnector().addUpgradeProtocol(http2);
+
 		AnnotationConfigWebApplicationContext webAppContext = new AnnotationConfigWebApplicationContext();
 		webAppContext.register(WebConfig.class);
 
@@ -0,0 +1,951 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.LongFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Hub to broadcast events to many {@link SseEmitter} subscribers by topic.
+ *
+ * <p>The subscribers of a topic are kept in a fixed number of stripes, each a
+ * concurrent map, so that subscribing and unsubscribing do not contend with
+ * each other, or with publishing. An event is published as an
+ * {@link SseFrame}, encoded to bytes once rather than serialized through the
+ * message converters for each subscriber, and put in the outbound queue of
+ * each subscriber. A writer per stripe, a virtual thread started when there
+ * are queued events, writes them out to one subscriber after another, so
+ * publishing to many idle subscribers takes one thread per stripe rather
+ * than per subscriber. Publishing never waits on a write, and a subscriber
+ * that holds up the writer of its stripe for longer than the
+ * {@link #setWriterHandoffTime handoff time}, e.g. with a blocked write,
+ * keeps that thread to itself, while a new writer takes over the rest of the
+ * stripe, so a slow client does not hold back delivery to the others.
+ * Subscribers are removed when their emitter completes, times out, or fails,
+ * or when sending to it fails.
+ *
+ * <p>A subscriber is slow when its queued events exceed the
+ * {@link #setMaxQueuedBytes byte budget}, or a write takes longer than the
+ * {@link #setWriteDeadline write deadline}, as checked by the
+ * {@link #startWatchdog watchdog}. What happens then depends on the
+ * {@link SlowSubscriberPolicy}. Slow subscribers are logged, and their
+ * {@link #getSlowSubscribers() statistics} show who they are.
+ *
+ * <p>Each topic also keeps recent events in an {@link SseReplayBuffer}, so a
+ * subscriber that reconnects with a {@code Last-Event-ID} is first sent the
+ * events it missed, and then live events, with none lost or repeated at the
+ * switch. Live events published during the replay are held for that
+ * subscriber only. As the history outlives subscribers, a topic with replay
+ * is kept after its last subscriber leaves, until nothing has been published
+ * to it for the {@link #setTopicIdleTimeout idle timeout}, as checked by the
+ * {@link #startWatchdog watchdog}. The replay buffer of a topic is allocated
+ * on the first publish, so subscribing to a topic nobody publishes to is
+ * cheap.
+ *
+ * <p>With an {@link SseEventLog}, pre-encoded frames are also appended to a
+ * durable log, and a {@code Last-Event-ID} that is no longer in memory, e.g.
+ * after a restart, is resumed from the log. For that, the id must be the
+ * sequence number of the event in its topic, see
+ * {@link #publish(String, LongFunction)}. Any other id that is not in memory
+ * is resumed with the events retained in memory only.
+ */
+public class SseBroadcaster {
+
+	private static final Logger logger = LogManager.getLogger(SseBroadcaster.class);
+
+
+	private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+
+	private final int stripeCount;
+
+	private final int replayCapacity;
+
+	private final Duration replayMaxAge;
+
+	private final @Nullable SseEventLog eventLog;
+
+	private long topicIdleTimeoutNanos;
+
+	private final ThreadFactory writerThreadFactory = Thread.ofVirtual().name("sse-writer-", 0).factory();
+
+	private long maxQueuedBytes = 1024 * 1024;
+
+	private long writeDeadlineNanos = Duration.ofSeconds(10).toNanos();
+
+	private long writerHandoffNanos = Duration.ofMillis(100).toNanos();
+
+	private SlowSubscriberPolicy slowSubscriberPolicy = SlowSubscriberPolicy.DISCONNECT;
+
+
+	/**
+	 * Create a broadcaster with a stripe per processor, and replay of up to
+	 * 1024 events no older than 5 minutes per topic.
+	 */
+	public SseBroadcaster() {
+		this(Runtime.getRuntime().availableProcessors(), 1024, Duration.ofMinutes(5));
+	}
+
+	/**
+	 * Create a broadcaster.
+	 * @param stripeCount the number of stripes of subscribers per topic
+	 * @param replayCapacity the number of events to keep per topic for
+	 * replay, or 0 for no replay
+	 * @param replayMaxAge the maximum age of events to replay
+	 */
+	public SseBroadcaster(int stripeCount, int replayCapacity, Duration replayMaxAge) {
+		this(stripeCount, replayCapacity, replayMaxAge, null);
+	}
+
+	/**
+	 * Create a broadcaster.
+	 * @param stripeCount the number of stripes of subscribers per topic
+	 * @param replayCapacity the number of events to keep in memory per topic
+	 * for replay, or 0 for none
+	 * @param replayMaxAge the maximum age of events to replay from memory
+	 * @param eventLog a durable log to append frames to, and to replay from
+	 * when an event is no longer in memory
+	 */
+	public SseBroadcaster(
+			int stripeCount, int replayCapacity, Duration replayMaxAge, @Nullable SseEventLog eventLog) {
+
+		Assert.isTrue(stripeCount > 0, "stripeCount must be greater than 0");
+		Assert.isTrue(replayCapacity >= 0, "replayCapacity must not be negative");
+		this.stripeCount = stripeCount;
+		this.replayCapacity = replayCapacity;
+		this.replayMaxAge = replayMaxAge;
+		this.eventLog = eventLog;
+		this.topicIdleTimeoutNanos = replayMaxAge.toNanos();
+	}
+
+
+	/**
+	 * Set the maximum number of bytes of events queued for a subscriber. A
+	 * single event larger than that is still queued if the queue is empty.
+	 * <p>By default, this is 1 MB.
+	 */
+	public void setMaxQueuedBytes(long maxQueuedBytes) {
+		Assert.isTrue(maxQueuedBytes > 0, "maxQueuedBytes must be greater than 0");
+		this.maxQueuedBytes = maxQueuedBytes;
+	}
+
+	/**
+	 * Set how long a write to a subscriber may take, before the subscriber is
+	 * considered slow. This is checked by the {@link #startWatchdog watchdog}.
+	 * <p>By default, this is 10 seconds.
+	 */
+	public void setWriteDeadline(Duration writeDeadline) {
+		Assert.isTrue(writeDeadline.isPositive(), "writeDeadline must be positive");
+		this.writeDeadlineNanos = writeDeadline.toNanos();
+	}
+
+	/**
+	 * Set how long one subscriber may hold up the writer of its stripe, e.g.
+	 * with a blocked write, before a new writer takes over the other
+	 * subscribers in the stripe. This is checked when events are published,
+	 * and by the {@link #startWatchdog watchdog}.
+	 * <p>By default, this is 100 milliseconds.
+	 */
+	public void setWriterHandoffTime(Duration writerHandoffTime) {
+		Assert.isTrue(writerHandoffTime.isPositive(), "writerHandoffTime must be positive");
+		this.writerHandoffNanos = writerHandoffTime.toNanos();
+	}
+
+	/**
+	 * Set what to do with a slow subscriber.
+	 * <p>By default, this is {@link SlowSubscriberPolicy#DISCONNECT}, after
+	 * which the client can reconnect, and resume with {@code Last-Event-ID}.
+	 */
+	public void setSlowSubscriberPolicy(SlowSubscriberPolicy slowSubscriberPolicy) {
+		Assert.notNull(slowSubscriberPolicy, "SlowSubscriberPolicy is required");
+		this.slowSubscriberPolicy = slowSubscriberPolicy;
+	}
+
+	/**
+	 * Set how long a topic without subscribers is kept after the last event
+	 * was published to it, for its replay history. Events in memory are not
+	 * replayed after the replay max age anyway, and the durable log, if any,
+	 * is kept regardless, so a shorter timeout only saves memory at the cost
+	 * of replay from memory. This is checked by the {@link #startWatchdog
+	 * watchdog}. Without replay, a topic is removed with its last subscriber.
+	 * <p>By default, this is the replay max age.
+	 */
+	public void setTopicIdleTimeout(Duration topicIdleTimeout) {
+		Assert.isTrue(topicIdleTimeout.isPositive(), "topicIdleTimeout must be positive");
+		this.topicIdleTimeoutNanos = topicIdleTimeout.toNanos();
+	}
+
+	/**
+	 * Check the write deadline of all subscribers, hand off stripes held up by
+	 * a subscriber, and remove idle topics, periodically, at half the write
+	 * deadline, with the given timer.
+	 * @return the timeout to cancel to stop the watchdog
+	 */
+	public HashedWheelTimer.Timeout startWatchdog(HashedWheelTimer timer) {
+		return timer.scheduleAtFixedRate(this::checkTopics, Duration.ofNanos(this.writeDeadlineNanos / 2));
+	}
+
+	private void checkTopics() {
+		long now = System.nanoTime();
+		for (Map.Entry<String, Topic> entry : this.topics.entrySet()) {
+			for (Stripe stripe : entry.getValue().nonEmptyStripes()) {
+				for (Subscriber subscriber : stripe.subscribers()) {
+					subscriber.checkWriteDeadline(now);
+				}
+				stripe.checkWriter(now);
+			}
+			// Atomic with subscribe and publish, which update the topic in a compute
+			this.topics.computeIfPresent(entry.getKey(), (_, topic) ->
+					(topic.isEmpty() && now - topic.getLastPublishTime() > this.topicIdleTimeoutNanos ? null : topic));
+		}
+	}
+
+
+	/**
+	 * Subscribe the given emitter to a topic.
+	 */
+	public SseEmitter subscribe(String topicName, SseEmitter emitter) {
+		return subscribe(topicName, emitter, null);
+	}
+
+	/**
+	 * Subscribe the given emitter to a topic, and if a last event id is given,
+	 * first send the retained events after it. If the id is no longer
+	 * retained, all retained events are sent.
+	 */
+	public SseEmitter subscribe(String topicName, SseEmitter emitter, @Nullable String lastEventId) {
+		return subscribe(topicName, emitter, lastEventId, "SseEmitter@" + Integer.toHexString(emitter.hashCode()));
+	}
+
+	/**
+	 * Variant of {@link #subscribe(String, SseEmitter, String)} with a name
+	 * for the subscriber, e.g. the address of the client, to identify it in
+	 * logs and statistics.
+	 */
+	public SseEmitter subscribe(
+			String topicName, SseEmitter emitter, @Nullable String lastEventId, String subscriberName) {
+
+		return subscribe(topicName, emitter, null, lastEventId, subscriberName);
+	}
+
+	/**
+	 * Variant of {@link #subscribe(String, SseEmitter, String, String)} for
+	 * the emitter of an {@link SseConnection}, which is told about each send,
+	 * so it sends heartbeats only while no events are sent.
+	 */
+	public SseEmitter subscribe(
+			String topicName, SseConnection connection, @Nullable String lastEventId, String subscriberName) {
+
+		return subscribe(topicName, connection.getEmitter(), connection, lastEventId, subscriberName);
+	}
+
+	private SseEmitter subscribe(String topicName, SseEmitter emitter, @Nullable SseConnection connection,
+			@Nullable String lastEventId, String subscriberName) {
+
+		boolean replay = (lastEventId != null && hasReplay());
+		Subscriber subscriber = new Subscriber(topicName, subscriberName, emitter, connection, replay);
+		Topic topic = this.topics.compute(topicName, (_, t) -> {
+			t = (t != null ? t : createTopic(topicName));
+			t.add(subscriber);
+			return t;
+		});
+		emitter.onCompletion(() -> unsubscribe(topicName, emitter));
+		emitter.onTimeout(() -> unsubscribe(topicName, emitter));
+		emitter.onError(_ -> unsubscribe(topicName, emitter));
+		if (replay && lastEventId != null) {
+			try {
+				replay(topicName, topic, subscriber, lastEventId);
+			}
+			catch (IOException | IllegalStateException ex) {
+				handleSendFailure(topicName, emitter, ex);
+			}
+		}
+		return emitter;
+	}
+
+	private boolean hasReplay() {
+		return (this.replayCapacity > 0 || this.eventLog != null);
+	}
+
+	private Topic createTopic(String topicName) {
+		long lastSequence = (this.eventLog != null ? this.eventLog.getLastSequence(topicName) : 0);
+		Stripe[] stripes = new Stripe[this.stripeCount];
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new Stripe();
+		}
+		return new Topic(stripes, this.replayCapacity, this.replayMaxAge, lastSequence);
+	}
+
+	/**
+	 * Replay from memory if the last event id is there, or else from the
+	 * durable log if the id is a sequence number, or else all events retained
+	 * in memory.
+	 */
+	private void replay(String topicName, Topic topic, Subscriber subscriber, String lastEventId) throws IOException {
+		long lastSequence = topic.getLastSequence();
+		SseReplayBuffer buffer = topic.getReplayBuffer();
+		List<SseReplayBuffer.Entry> entries = (buffer != null ? buffer.getEntriesAfter(lastEventId) : null);
+		long afterSequence = parseSequence(lastEventId);
+		if (entries == null && this.eventLog != null && afterSequence >= 0) {
+			SseEventLog.Replay replay = this.eventLog.replay(topicName, afterSequence, lastSequence);
+			logger.debug("Replaying " + replay + " from the event log after Last-Event-ID " + lastEventId);
+			subscriber.replay(List.of(Set.of(new DataWithMediaType(replay, MediaType.TEXT_EVENT_STREAM))), lastSequence);
+			return;
+		}
+		if (entries == null) {
+			logger.debug("Last-Event-ID " + lastEventId + " not retained, replaying all retained events");
+			entries = (buffer != null ? buffer.getEntriesAfter(0L) : List.of());
+		}
+		long replayedSequence = lastSequence;
+		List<Set<DataWithMediaType>> events = new ArrayList<>(entries.size());
+		for (SseReplayBuffer.Entry entry : entries) {
+			events.add(entry.items());
+			replayedSequence = Math.max(replayedSequence, entry.sequence());
+		}
+		subscriber.replay(events, replayedSequence);
+	}
+
+	/**
+	 * Return the sequence number in the given id, or -1 if it is not one, in
+	 * which case it is not known where to resume in the log, and replaying
+	 * the whole log could be far more than the client missed.
+	 */
+	private static long parseSequence(String lastEventId) {
+		try {
+			return Math.max(-1, Long.parseLong(lastEventId));
+		}
+		catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Remove the given emitter from a topic, and the topic itself if it has
+	 * no more subscribers, and no replay. A topic with replay is removed
+	 * later, when idle.
+	 */
+	public void unsubscribe(String topicName, SseEmitter emitter) {
+		this.topics.computeIfPresent(topicName, (_, topic) -> {
+			Subscriber subscriber = topic.remove(emitter);
+			if (subscriber != null) {
+				subscriber.close();
+			}
+			return (topic.isEmpty() && !hasReplay() ? null : topic);
+		});
+	}
+
+	/**
+	 * Return the number of subscribers to a topic.
+	 */
+	public int getSubscriberCount(String topicName) {
+		Topic topic = this.topics.get(topicName);
+		return (topic != null ? topic.size() : 0);
+	}
+
+	/**
+	 * Return the statistics of the subscribers to a topic.
+	 */
+	public List<SubscriberStats> getSubscriberStats(String topicName) {
+		Topic topic = this.topics.get(topicName);
+		List<SubscriberStats> result = new ArrayList<>();
+		if (topic != null) {
+			for (Stripe stripe : topic.nonEmptyStripes()) {
+				for (Subscriber subscriber : stripe.subscribers()) {
+					result.add(subscriber.getStats());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the statistics of the subscribers, across topics, that have
+	 * exceeded the byte budget or the write deadline.
+	 */
+	public List<SubscriberStats> getSlowSubscribers() {
+		List<SubscriberStats> result = new ArrayList<>();
+		for (String topicName : this.topics.keySet()) {
+			for (SubscriberStats stats : getSubscriberStats(topicName)) {
+				if (stats.slowCount() > 0) {
+					result.add(stats);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Publish a pre-encoded frame to all subscribers of a topic, and return
+	 * after it has been queued for all subscribers.
+	 */
+	public void publish(String topicName, SseFrame frame) {
+		publish(topicName, _ -> frame);
+	}
+
+	/**
+	 * Publish a pre-encoded frame created for the sequence number of the
+	 * event in the topic, e.g. to use it as the event id, so that clients can
+	 * resume from the {@link SseEventLog} also after a restart. Returns after
+	 * the frame has been queued for all subscribers.
+	 * @param topicName the topic
+	 * @param frameFactory to create the frame for a given sequence number,
+	 * called while appends to the topic are serialized
+	 */
+	public void publish(String topicName, LongFunction<SseFrame> frameFactory) {
+		Topic topic = getTopicToPublishTo(topicName);
+		if (topic != null) {
+			publish(topic, topic.append(topicName, frameFactory, this.eventLog));
+		}
+	}
+
+	private @Nullable Topic getTopicToPublishTo(String topicName) {
+		if (!hasReplay()) {
+			return this.topics.get(topicName);
+		}
+		// Keep history also while there are no subscribers
+		return this.topics.compute(topicName, (_, topic) -> {
+			topic = (topic != null ? topic : createTopic(topicName));
+			topic.published();
+			return topic;
+		});
+	}
+
+	private void publish(Topic topic, SseReplayBuffer.Entry entry) {
+		List<Stripe> stripes = topic.nonEmptyStripes();
+		if (stripes.isEmpty()) {
+			return;
+		}
+		long size = sizeOf(entry.items());
+		for (Stripe stripe : stripes) {
+			stripe.send(entry, size);
+		}
+	}
+
+	private static long sizeOf(Set<DataWithMediaType> items) {
+		long size = 0;
+		for (DataWithMediaType item : items) {
+			size += switch (item.getData()) {
+				case byte[] bytes -> bytes.length;
+				case CharSequence chars -> chars.length();
+				case SseEventLog.Replay replay -> replay.getByteCount();
+				default -> 0;
+			};
+		}
+		return size;
+	}
+
+	private void handleSendFailure(String topicName, SseEmitter emitter, Exception ex) {
+		logger.debug("Removing subscriber after failed send: " + ex);
+		unsubscribe(topicName, emitter);
+		emitter.completeWithError(ex);
+	}
+
+
+	/**
+	 * Statistics of a subscriber.
+	 * @param topic the topic subscribed to
+	 * @param name the name of the subscriber
+	 * @param queuedEvents the number of events in its outbound queue
+	 * @param queuedBytes the number of bytes in its outbound queue
+	 * @param droppedEvents the number of events dropped or conflated
+	 * @param slowCount how many times it exceeded the byte budget or the
+	 * write deadline
+	 * @param maxWriteTime the longest time a write took
+	 */
+	public record SubscriberStats(
+			String topic, String name, int queuedEvents, long queuedBytes, long droppedEvents,
+			long slowCount, Duration maxWriteTime) {
+	}
+
+
+	/**
+	 * What to do with a subscriber that exceeds the byte budget of its
+	 * outbound queue, or the write deadline.
+	 */
+	public enum SlowSubscriberPolicy {
+
+		/**
+		 * Drop the oldest queued events to make space for the newest, or all
+		 * queued events when a write exceeds the deadline. The client misses
+		 * events, but stays connected.
+		 */
+		DROP,
+
+		/**
+		 * Replace all queued events with the newest, for streams where each
+		 * event supersedes the ones before it, such as state snapshots.
+		 */
+		CONFLATE,
+
+		/**
+		 * Complete the emitter with an error, and remove the subscriber. The
+		 * client can reconnect, and resume with {@code Last-Event-ID}.
+		 */
+		DISCONNECT
+	}
+
+
+	/**
+	 * The subscribers of a topic, in stripes, its replay buffer, created on
+	 * the first append, and the sequence number of its last event.
+	 */
+	private static final class Topic {
+
+		private final Stripe[] stripes;
+
+		private final int replayCapacity;
+
+		private final Duration replayMaxAge;
+
+		private volatile @Nullable SseReplayBuffer replayBuffer;
+
+		private volatile long lastSequence;
+
+		private volatile long lastPublishTime = System.nanoTime();
+
+		Topic(Stripe[] stripes, int replayCapacity, Duration replayMaxAge, long lastSequence) {
+			this.stripes = stripes;
+			this.replayCapacity = replayCapacity;
+			this.replayMaxAge = replayMaxAge;
+			this.lastSequence = lastSequence;
+		}
+
+		@Nullable SseReplayBuffer getReplayBuffer() {
+			return this.replayBuffer;
+		}
+
+		long getLastSequence() {
+			return this.lastSequence;
+		}
+
+		long getLastPublishTime() {
+			return this.lastPublishTime;
+		}
+
+		void published() {
+			this.lastPublishTime = System.nanoTime();
+		}
+
+		synchronized SseReplayBuffer.Entry append(
+				String topicName, LongFunction<SseFrame> frameFactory, @Nullable SseEventLog eventLog) {
+
+			SseFrame frame = frameFactory.apply(this.lastSequence + 1);
+			if (eventLog != null) {
+				eventLog.append(topicName, this.lastSequence + 1, frame);
+			}
+			return append(frame.getId(), frame.getItems());
+		}
+
+		synchronized SseReplayBuffer.Entry append(@Nullable String id, Set<DataWithMediaType> items) {
+			long sequence = this.lastSequence + 1;
+			SseReplayBuffer buffer = this.replayBuffer;
+			if (buffer == null && this.replayCapacity > 0) {
+				buffer = new SseReplayBuffer(this.replayCapacity, this.replayMaxAge, this.lastSequence);
+				this.replayBuffer = buffer;
+			}
+			SseReplayBuffer.Entry entry = (buffer != null ?
+					buffer.append(id, items) : new SseReplayBuffer.Entry(sequence, id, System.nanoTime(), items));
+			Assert.state(entry.sequence() == sequence, "Replay buffer out of sync");
+			this.lastSequence = sequence;
+			return entry;
+		}
+
+		void add(Subscriber subscriber) {
+			stripeFor(subscriber.emitter).add(subscriber);
+		}
+
+		@Nullable Subscriber remove(SseEmitter emitter) {
+			return stripeFor(emitter).remove(emitter);
+		}
+
+		private Stripe stripeFor(SseEmitter emitter) {
+			return this.stripes[Math.floorMod(System.identityHashCode(emitter), this.stripes.length)];
+		}
+
+		List<Stripe> nonEmptyStripes() {
+			List<Stripe> result = new ArrayList<>(this.stripes.length);
+			for (Stripe stripe : this.stripes) {
+				if (stripe.size() > 0) {
+					result.add(stripe);
+				}
+			}
+			return result;
+		}
+
+		boolean isEmpty() {
+			return (size() == 0);
+		}
+
+		int size() {
+			int size = 0;
+			for (Stripe stripe : this.stripes) {
+				size += stripe.size();
+			}
+			return size;
+		}
+	}
+
+
+	/**
+	 * A stripe of the subscribers of a topic, with a writer that writes out
+	 * the queued events of its subscribers, one subscriber after another.
+	 * A writer that is held up by one subscriber for longer than the handoff
+	 * time is left to that subscriber, and exits once it has written out its
+	 * queue, while a new writer takes over the other subscribers.
+	 */
+	private final class Stripe {
+
+		private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+		private final Deque<Subscriber> ready = new ArrayDeque<>(); // guarded by this
+
+		private @Nullable Thread writer; // guarded by this
+
+		private @Nullable Subscriber writing; // guarded by this
+
+		private long writeStartTime; // guarded by this
+
+		void add(Subscriber subscriber) {
+			this.subscribers.put(subscriber.emitter, subscriber);
+		}
+
+		@Nullable Subscriber remove(SseEmitter emitter) {
+			return this.subscribers.remove(emitter);
+		}
+
+		Collection<Subscriber> subscribers() {
+			return this.subscribers.values();
+		}
+
+		int size() {
+			return this.subscribers.size();
+		}
+
+		/**
+		 * Queue an event for all subscribers, and have a writer write it out
+		 * to those that it is not already writing to.
+		 */
+		void send(SseReplayBuffer.Entry entry, long size) {
+			List<Subscriber> ready = null;
+			for (Subscriber subscriber : this.subscribers.values()) {
+				if (subscriber.send(entry, size)) {
+					ready = (ready != null ? ready : new ArrayList<>());
+					ready.add(subscriber);
+				}
+			}
+			Thread writer;
+			synchronized (this) {
+				if (ready != null) {
+					this.ready.addAll(ready);
+				}
+				writer = createWriterIfNecessary(System.nanoTime());
+			}
+			if (writer != null) {
+				writer.start();
+			}
+		}
+
+		/**
+		 * Start a new writer, if subscribers wait for one while the writer is
+		 * held up by a subscriber for longer than the handoff time.
+		 */
+		void checkWriter(long now) {
+			Thread writer;
+			synchronized (this) {
+				writer = createWriterIfNecessary(now);
+			}
+			if (writer != null) {
+				writer.start();
+			}
+		}
+
+		/**
+		 * Create a writer if subscribers wait for one, and there is no writer,
+		 * or it is held up. Must be called with the lock held.
+		 * @return the writer to start, or {@code null} if none
+		 */
+		private @Nullable Thread createWriterIfNecessary(long now) {
+			if (this.ready.isEmpty() || (this.writer != null &&
+					(this.writing == null || now - this.writeStartTime <= writerHandoffNanos))) {
+				return null;
+			}
+			Subscriber writing = this.writing;
+			if (writing != null) {
+				logger.debug("Handing off the other subscribers from the writer held up by " + writing.name);
+			}
+			this.writer = writerThreadFactory.newThread(this::write);
+			this.writing = null;
+			return this.writer;
+		}
+
+		private void write() {
+			Thread thread = Thread.currentThread();
+			while (true) {
+				Subscriber subscriber;
+				synchronized (this) {
+					if (this.writer != thread) {
+						// Handed off, while held up by the last subscriber
+						return;
+					}
+					subscriber = this.ready.poll();
+					if (subscriber == null) {
+						this.writer = null;
+						return;
+					}
+					this.writing = subscriber;
+					this.writeStartTime = System.nanoTime();
+				}
+				subscriber.write();
+				synchronized (this) {
+					if (this.writer == thread) {
+						this.writing = null;
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * A subscriber with its outbound queue, and while events are replayed to
+	 * it, the live events held back until the replay is done.
+	 */
+	private final class Subscriber {
+
+		private final String topicName;
+
+		private final String name;
+
+		private final SseEmitter emitter;
+
+		private final @Nullable SseConnection connection;
+
+		private final Deque<QueuedEvent> queue = new ArrayDeque<>(); // guarded by this
+
+		private long queuedBytes; // guarded by this
+
+		private boolean writing; // guarded by this
+
+		private boolean closed; // guarded by this
+
+		private long replayedSequence; // guarded by this
+
+		private @Nullable List<SseReplayBuffer.Entry> pending; // guarded by this
+
+		private long droppedCount; // guarded by this
+
+		private long slowCount; // guarded by this
+
+		private volatile long writeStartTime;
+
+		private volatile long maxWriteNanos;
+
+		Subscriber(String topicName, String name, SseEmitter emitter, @Nullable SseConnection connection,
+				boolean replay) {
+
+			this.topicName = topicName;
+			this.name = name;
+			this.emitter = emitter;
+			this.connection = connection;
+			this.pending = (replay ? new ArrayList<>() : null);
+		}
+
+		/**
+		 * Queue an event, and return whether the subscriber needs a writer,
+		 * i.e. none is writing to it yet.
+		 */
+		synchronized boolean send(SseReplayBuffer.Entry entry, long size) {
+			if (this.closed) {
+				return false;
+			}
+			if (this.pending != null) {
+				this.pending.add(entry);
+				return false;
+			}
+			if (entry.sequence() <= this.replayedSequence) {
+				return false;
+			}
+			if (this.queuedBytes + size > maxQueuedBytes && !this.queue.isEmpty() &&
+					!handleSlow(size, "queued " + this.queuedBytes + " bytes")) {
+				return false;
+			}
+			this.queue.add(new QueuedEvent(entry.items(), size));
+			this.queuedBytes += size;
+			if (this.writing) {
+				return false;
+			}
+			this.writing = true;
+			return true;
+		}
+
+		/**
+		 * Apply the {@link SlowSubscriberPolicy}, and return whether to still
+		 * queue the event that exceeded the byte budget.
+		 * @param size the size of the event to queue, or -1 for none
+		 * @param reason the reason the subscriber is slow, to log
+		 */
+		private boolean handleSlow(long size, String reason) {
+			if (this.slowCount++ == 0) {
+				logger.warn("Slow subscriber " + this.name + " to topic \"" + this.topicName + "\", " +
+						reason + ", applying " + slowSubscriberPolicy);
+			}
+			switch (slowSubscriberPolicy) {
+				case DROP -> {
+					while (!this.queue.isEmpty() && (size == -1 || this.queuedBytes + size > maxQueuedBytes)) {
+						this.queuedBytes -= this.queue.removeFirst().size();
+						this.droppedCount++;
+					}
+				}
+				case CONFLATE -> {
+					this.droppedCount += this.queue.size();
+					this.queue.clear();
+					this.queuedBytes = 0;
+				}
+				case DISCONNECT -> {
+					close();
+					// Not on this thread, as completing may wait for a blocked write
+					writerThreadFactory.newThread(() -> handleSendFailure(this.topicName, this.emitter,
+							new IOException("Disconnected slow subscriber " + this.name + ", " + reason))).start();
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Write out queued events, until the queue is empty.
+		 */
+		void write() {
+			while (true) {
+				QueuedEvent event;
+				synchronized (this) {
+					event = this.queue.poll();
+					if (event == null || this.closed) {
+						this.writing = false;
+						return;
+					}
+					this.queuedBytes -= event.size();
+				}
+				long startTime = System.nanoTime();
+				this.writeStartTime = startTime;
+				try {
+					sendNow(event.items());
+				}
+				catch (IOException | IllegalStateException ex) {
+					synchronized (this) {
+						close();
+						this.writing = false;
+					}
+					handleSendFailure(this.topicName, this.emitter, ex);
+					return;
+				}
+				finally {
+					this.writeStartTime = 0;
+				}
+				long writeNanos = System.nanoTime() - startTime;
+				if (writeNanos > this.maxWriteNanos) {
+					this.maxWriteNanos = writeNanos;
+				}
+			}
+		}
+
+		private void sendNow(Set<DataWithMediaType> items) throws IOException {
+			this.emitter.send(items);
+			if (this.connection != null) {
+				this.connection.recordSend();
+			}
+		}
+
+		synchronized void checkWriteDeadline(long now) {
+			long startTime = this.writeStartTime;
+			if (startTime != 0 && now - startTime > writeDeadlineNanos && !this.closed) {
+				handleSlow(-1, "write blocked for " + Duration.ofNanos(now - startTime).toMillis() + " ms");
+			}
+		}
+
+		synchronized void close() {
+			this.closed = true;
+			this.droppedCount += this.queue.size();
+			this.queue.clear();
+			this.queuedBytes = 0;
+		}
+
+		synchronized SubscriberStats getStats() {
+			return new SubscriberStats(this.topicName, this.name, this.queue.size(), this.queuedBytes,
+					this.droppedCount, this.slowCount, Duration.ofNanos(this.maxWriteNanos));
+		}
+
+		/**
+		 * Send replayed events, then the events held during the replay that
+		 * were not part of it, and then switch to live events.
+		 * @param events the events to replay
+		 * @param replayedSequence the sequence number up to which events were
+		 * replayed, or appended before the events to replay were read
+		 */
+		void replay(List<Set<DataWithMediaType>> events, long replayedSequence) throws IOException {
+			for (Set<DataWithMediaType> items : events) {
+				sendNow(items);
+			}
+			while (true) {
+				List<SseReplayBuffer.Entry> held;
+				synchronized (this) {
+					held = this.pending;
+					Assert.state(held != null, "Not replaying");
+					if (held.isEmpty()) {
+						this.pending = null;
+						this.replayedSequence = replayedSequence;
+						return;
+					}
+					this.pending = new ArrayList<>();
+				}
+				held.sort(Comparator.comparingLong(SseReplayBuffer.Entry::sequence));
+				for (SseReplayBuffer.Entry entry : held) {
+					if (entry.sequence() > replayedSequence) {
+						sendNow(entry.items());
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * An event in the outbound queue of a subscriber.
+	 */
+	private record QueuedEvent(Set<DataWithMediaType> items, long size) {
+	}
+
+}
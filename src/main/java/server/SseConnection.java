@@ -0,0 +1,235 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * An {@link SseEmitter} with heartbeats, an idle timeout, and delayed actions,
+ * all scheduled on a shared {@link HashedWheelTimer} rather than on a thread
+ * per connection.
+ *
+ * <p>A heartbeat is an empty comment, {@code ":\n\n"}, that keeps the
+ * connection open through proxies, and is sent only if nothing else was
+ * sent through this connection during the heartbeat interval. The connection
+ * is completed if nothing but heartbeats was sent for the idle timeout.
+ * Sending, or a delayed action, resets the idle timeout with a single write,
+ * and the timer checks the time of the last send when the timeout expires.
+ * Code that sends through the emitter directly, such as an
+ * {@link SseBroadcaster}, should {@link #recordSend() record} that it did.
+ * A heartbeat is skipped while the previous one is still being written, e.g.
+ * to a slow client.
+ */
+public class SseConnection {
+
+	private static final Logger logger = LogManager.getLogger(SseConnection.class);
+
+	private static final SseFrame HEARTBEAT = SseFrame.comment("");
+
+
+	private final SseEmitter emitter;
+
+	private final HashedWheelTimer timer;
+
+	private final long heartbeatNanos;
+
+	private final long idleTimeoutNanos;
+
+	private volatile long lastSendTime = System.nanoTime();
+
+	private volatile HashedWheelTimer.@Nullable Timeout heartbeat;
+
+	private volatile HashedWheelTimer.@Nullable Timeout idleCheck;
+
+	private final AtomicBoolean heartbeatInFlight = new AtomicBoolean();
+
+	private volatile boolean completed;
+
+
+	private SseConnection(
+			SseEmitter emitter, HashedWheelTimer timer, Duration heartbeatInterval, @Nullable Duration idleTimeout) {
+
+		Assert.notNull(emitter, "SseEmitter is required");
+		Assert.notNull(timer, "HashedWheelTimer is required");
+		this.emitter = emitter;
+		this.timer = timer;
+		this.heartbeatNanos = heartbeatInterval.toNanos();
+		this.idleTimeoutNanos = (idleTimeout != null ? idleTimeout.toNanos() : 0);
+		this.emitter.onCompletion(this::cancelTimeouts);
+		this.emitter.onTimeout(this::cancelTimeouts);
+		this.emitter.onError(_ -> cancelTimeouts());
+	}
+
+	private void start() {
+		this.heartbeat = this.timer.scheduleAtFixedRate(this::sendHeartbeat, Duration.ofNanos(this.heartbeatNanos));
+		if (this.idleTimeoutNanos > 0) {
+			this.idleCheck = this.timer.schedule(this::checkIdle, Duration.ofNanos(this.idleTimeoutNanos));
+		}
+		if (this.completed) {
+			// Completed before the timeouts were set
+			cancelTimeouts();
+		}
+	}
+
+
+	/**
+	 * Return the underlying emitter, e.g. to return from a controller method.
+	 */
+	public SseEmitter getEmitter() {
+		return this.emitter;
+	}
+
+	/**
+	 * Send a frame, and reset the idle timeout.
+	 */
+	public void send(SseFrame frame) throws IOException {
+		frame.sendTo(this.emitter);
+		recordSend();
+	}
+
+	/**
+	 * Record that something was sent through the emitter other than via
+	 * {@link #send(SseFrame)}, to reset the idle timeout, and defer the next
+	 * heartbeat.
+	 */
+	public void recordSend() {
+		this.lastSendTime = System.nanoTime();
+	}
+
+	/**
+	 * Run the given action after a delay, unless the connection is completed
+	 * by then. If the action fails, the connection is completed with the error.
+	 */
+	public HashedWheelTimer.Timeout schedule(Duration delay, Action action) {
+		return this.timer.schedule(() -> {
+			if (this.completed) {
+				return;
+			}
+			try {
+				action.run(this);
+			}
+			catch (Exception ex) {
+				completeWithError(ex);
+			}
+		}, delay);
+	}
+
+	/**
+	 * Complete the connection, and cancel its heartbeat and idle timeout.
+	 */
+	public void complete() {
+		cancelTimeouts();
+		this.emitter.complete();
+	}
+
+	/**
+	 * Complete the connection with an error, and cancel its heartbeat and
+	 * idle timeout.
+	 */
+	public void completeWithError(Throwable ex) {
+		cancelTimeouts();
+		this.emitter.completeWithError(ex);
+	}
+
+	private void sendHeartbeat() {
+		if (this.completed || System.nanoTime() - this.lastSendTime < this.heartbeatNanos) {
+			return;
+		}
+		if (!this.heartbeatInFlight.compareAndSet(false, true)) {
+			// The previous heartbeat is blocked on a slow client
+			return;
+		}
+		try {
+			HEARTBEAT.sendTo(this.emitter);
+		}
+		catch (IOException | IllegalStateException ex) {
+			logger.debug("Failed to send heartbeat: " + ex);
+			completeWithError(ex);
+		}
+		finally {
+			this.heartbeatInFlight.set(false);
+		}
+	}
+
+	private void checkIdle() {
+		if (this.completed) {
+			return;
+		}
+		long idleNanos = System.nanoTime() - this.lastSendTime;
+		if (idleNanos >= this.idleTimeoutNanos) {
+			logger.debug("Completing connection idle for " + Duration.ofNanos(idleNanos));
+			complete();
+		}
+		else {
+			this.idleCheck = this.timer.schedule(this::checkIdle, Duration.ofNanos(this.idleTimeoutNanos - idleNanos));
+			if (this.completed) {
+				cancelTimeouts();
+			}
+		}
+	}
+
+	private void cancelTimeouts() {
+		this.completed = true;
+		HashedWheelTimer.Timeout timeout = this.heartbeat;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+		timeout = this.idleCheck;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+
+
+	/**
+	 * Open a connection for the given emitter.
+	 * @param emitter the emitter to send through
+	 * @param timer the timer to schedule heartbeats, idle timeouts, and
+	 * delayed actions with
+	 * @param heartbeatInterval the interval between heartbeats
+	 * @param idleTimeout how long the connection may be idle before it is
+	 * completed, or {@code null} for no idle timeout
+	 */
+	public static SseConnection open(
+			SseEmitter emitter, HashedWheelTimer timer, Duration heartbeatInterval, @Nullable Duration idleTimeout) {
+
+		SseConnection connection = new SseConnection(emitter, timer, heartbeatInterval, idleTimeout);
+		connection.start();
+		return connection;
+	}
+
+
+	/**
+	 * An action to run on a connection after a delay.
+	 */
+	@FunctionalInterface
+	public interface Action {
+
+		void run(SseConnection connection) throws IOException;
+
+	}
+
+}
@@ -16,65 +16,131 @@
 
 package server;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.jspecify.annotations.Nullable;
 
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 public class SseController {
 
-	private static final Logger logger = LogManager.getLogger(SseController.class);
+	private static final SseFrame DATA_1 = SseFrame.data("data-1");
+
+	private static final SseFrame DATA_2 = SseFrame.data("data-2");
+
+	private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
+	private static final Duration IDLE_TIMEOUT = Duration.ofSeconds(60);
+
+
+	private final SseBroadcaster broadcaster;
+
+	private final HashedWheelTimer timer;
+
+
+	public SseController(SseBroadcaster broadcaster, HashedWheelTimer timer) {
+		this.broadcaster = broadcaster;
+		this.timer = timer;
+	}
 
 
 	@GetMapping("/sse")
-	public SseEmitter sse() {
-		SseEmitter emitter = new SseEmitter();
-		Thread.ofVirtual().start(() -> {
-			try {
-				emitter.send("data-1");
-				Thread.sleep(5000);
-				emitter.send("data-2");
-				emitter.complete();
-			}
-			catch (Exception ex) {
-				logger.error(ex);
-			}
+	public SseEmitter sse() throws IOException {
+		SseConnection connection = openConnection(new SseEmitter(), IDLE_TIMEOUT);
+		connection.send(DATA_1);
+		connection.schedule(Duration.ofSeconds(5), c -> {
+			c.send(DATA_2);
+			c.complete();
 		});
-		return emitter;
+		return connection.getEmitter();
 	}
 
 	@GetMapping("/sse-complete-empty")
 	public SseEmitter sseEmpty() {
-		SseEmitter emitter = new SseEmitter();
-		Thread.ofVirtual().start(() -> {
-			try {
-				Thread.sleep(2000);
-				emitter.complete();
-			}
-			catch (Exception ex) {
-				logger.error(ex);
-			}
-		});
-		return emitter;
+		SseConnection connection = openConnection(new SseEmitter(), IDLE_TIMEOUT);
+		connection.schedule(Duration.ofSeconds(2), SseConnection::complete);
+		return connection.getEmitter();
 	}
 
 	@GetMapping("/sse-complete-with-error")
-	public SseEmitter sseError() {
-		SseEmitter emitter = new SseEmitter();
-		Thread.ofVirtual().start(() -> {
-			try {
-				emitter.send("data-1");
-				Thread.sleep(2000);
-				emitter.completeWithError(new Exception("simulated error"));
+	public SseEmitter sseError() throws IOException {
+		SseConnection connection = openConnection(new SseEmitter(), IDLE_TIMEOUT);
+		connection.send(DATA_1);
+		connection.schedule(Duration.ofSeconds(2), c -> c.completeWithError(new Exception("simulated error")));
+		return connection.getEmitter();
+	}
+
+	/**
+	 * Stream for load tests, with {@code count} events sent {@code interval}
+	 * milliseconds apart, each with {@code size} bytes of data.
+	 */
+	@GetMapping("/load")
+	public SseEmitter load(
+			@RequestParam(defaultValue = "100") int count, @RequestParam(defaultValue = "100") long interval,
+			@RequestParam(defaultValue = "64") int size) {
+
+		SseConnection connection = openConnection(new SseEmitter(0L), IDLE_TIMEOUT);
+		scheduleLoadEvent(connection, 0, count, Duration.ofMillis(interval), "x".repeat(size));
+		return connection.getEmitter();
+	}
+
+	private void scheduleLoadEvent(SseConnection connection, int index, int count, Duration interval, String data) {
+		connection.schedule(interval, c -> {
+			c.send(SseFrame.builder().id(String.valueOf(index)).data(data).build());
+			if (index + 1 < count) {
+				scheduleLoadEvent(c, index + 1, count, interval, data);
 			}
-			catch (Exception ex) {
-				logger.error(ex);
+			else {
+				c.complete();
 			}
 		});
-		return emitter;
+	}
+
+	/**
+	 * Subscribe to a topic, and with a {@code Last-Event-ID}, first receive
+	 * the retained events after it.
+	 */
+	@GetMapping("/topics/{topic}")
+	public SseEmitter subscribe(
+			@PathVariable String topic, @RequestHeader(name = "Last-Event-ID", required = false) @Nullable String lastEventId,
+			HttpServletRequest request) {
+
+		// No async timeout: heartbeats keep the connection open, and detect disconnected clients
+		SseConnection connection = openConnection(new SseEmitter(0L), null);
+		String name = request.getRemoteAddr() + ":" + request.getRemotePort();
+		return this.broadcaster.subscribe(topic, connection, lastEventId, name);
+	}
+
+	@PostMapping("/topics/{topic}")
+	public void publish(@PathVariable String topic, @RequestBody String data) {
+		// The sequence number as id, to resume from the event log also after a restart
+		this.broadcaster.publish(topic, sequence -> SseFrame.builder().id(String.valueOf(sequence)).data(data).build());
+	}
+
+	/**
+	 * List the subscribers that exceeded their byte budget or write deadline.
+	 */
+	@GetMapping(path = "/slow-subscribers", produces = "text/plain")
+	public String slowSubscribers() {
+		return this.broadcaster.getSlowSubscribers().stream()
+				.map(SseBroadcaster.SubscriberStats::toString)
+				.collect(Collectors.joining("\n"));
+	}
+
+	private SseConnection openConnection(SseEmitter emitter, @Nullable Duration idleTimeout) {
+		return SseConnection.open(emitter, this.timer, HEARTBEAT_INTERVAL, idleTimeout);
 	}
 
 }
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Durable, append-only log of the pre-encoded events of each topic, to
+ * replay events to clients that reconnect after a restart of the server, or
+ * after being offline for longer than an in-memory buffer covers.
+ *
+ * <p>The log of a topic is a directory of segment files, each named after
+ * the sequence number of its first event, and memory-mapped at a fixed size.
+ * A record is the length of the frame, the sequence number of the event, and
+ * the bytes of the {@link SseFrame}. A zero length marks the end of the
+ * records in a segment. Each segment has a sparse in-memory index with an
+ * entry every few KB, from sequence number to offset, so a replay starts
+ * with a binary search and a short scan. The index is rebuilt by scanning
+ * the segments when the log of a topic is first opened.
+ *
+ * <p>Segments are removed, oldest first, when their last event is older
+ * than the retention period, or when the segments of a topic exceed the
+ * maximum size. Retention is checked when a segment is full, and on each
+ * call to {@link #enforceRetention()}, e.g. from a timer.
+ *
+ * <p>Appends are not forced to disk, and survive a crash of the process, but
+ * not of the operating system. Segments are forced when full, and on close.
+ */
+public class SseEventLog implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger(SseEventLog.class);
+
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+	private static final int INDEX_INTERVAL = 4096;
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final long retentionMillis;
+
+	private final long maxTopicBytes;
+
+	private final Map<String, TopicLog> topicLogs = new ConcurrentHashMap<>();
+
+	private volatile boolean closed;
+
+
+	/**
+	 * Create a log with 64 MB segments, and a retention of 24 hours, or 1 GB
+	 * per topic.
+	 */
+	public SseEventLog(Path directory) {
+		this(directory, 64 * 1024 * 1024, Duration.ofHours(24), 1024 * 1024 * 1024L);
+	}
+
+	/**
+	 * Create a log.
+	 * @param directory the directory for the logs of all topics
+	 * @param segmentSize the size of a segment file
+	 * @param retention how long to keep a segment after its last event
+	 * @param maxTopicBytes the maximum size of the segments of a topic
+	 */
+	public SseEventLog(Path directory, int segmentSize, Duration retention, long maxTopicBytes) {
+		Assert.notNull(directory, "Directory is required");
+		Assert.isTrue(segmentSize > HEADER_SIZE, "segmentSize is too small");
+		Assert.isTrue(maxTopicBytes >= segmentSize, "maxTopicBytes must be at least one segment");
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.retentionMillis = retention.toMillis();
+		this.maxTopicBytes = maxTopicBytes;
+	}
+
+
+	/**
+	 * Return the sequence number of the last event of a topic, or 0 if none.
+	 */
+	public long getLastSequence(String topicName) {
+		TopicLog topicLog = getExistingTopicLog(topicName);
+		return (topicLog != null ? topicLog.getLastSequence() : 0);
+	}
+
+	/**
+	 * Append an event to the log of a topic.
+	 * @param topicName the topic
+	 * @param sequence the sequence number of the event, greater than that of
+	 * the last event
+	 * @param frame the encoded event
+	 */
+	public void append(String topicName, long sequence, SseFrame frame) {
+		getTopicLog(topicName).append(sequence, frame);
+	}
+
+	/**
+	 * Return the events of a topic with a sequence number greater than
+	 * {@code afterSequence}, up to and including {@code lastSequence}. If
+	 * events after {@code afterSequence} were removed, the replay starts with
+	 * the oldest retained event.
+	 */
+	public Replay replay(String topicName, long afterSequence, long lastSequence) {
+		TopicLog topicLog = getExistingTopicLog(topicName);
+		return (topicLog != null ? topicLog.replay(afterSequence, lastSequence) : new Replay(List.of()));
+	}
+
+	/**
+	 * Remove segments beyond the retention period or size of their topic.
+	 */
+	public void enforceRetention() {
+		for (TopicLog topicLog : this.topicLogs.values()) {
+			topicLog.enforceRetention();
+		}
+	}
+
+	private TopicLog getTopicLog(String topicName) {
+		Assert.state(!this.closed, "SseEventLog is closed");
+		return this.topicLogs.computeIfAbsent(topicName, name -> {
+			try {
+				return new TopicLog(getDirectory(name));
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException("Failed to open log for topic " + name, ex);
+			}
+		});
+	}
+
+	/**
+	 * Return the log of a topic only if something was appended to it, now or
+	 * before a restart, so that reading, e.g. for a client that subscribes to
+	 * a topic nobody publishes to, does not create a directory and log state.
+	 */
+	private @Nullable TopicLog getExistingTopicLog(String topicName) {
+		Assert.state(!this.closed, "SseEventLog is closed");
+		TopicLog topicLog = this.topicLogs.get(topicName);
+		if (topicLog == null && Files.isDirectory(getDirectory(topicName))) {
+			topicLog = getTopicLog(topicName);
+		}
+		return topicLog;
+	}
+
+	private Path getDirectory(String topicName) {
+		// Encode, so a topic name cannot escape the directory
+		String dirName = URLEncoder.encode(topicName, StandardCharsets.UTF_8).replace(".", "%2E");
+		return this.directory.resolve(dirName);
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+		for (TopicLog topicLog : this.topicLogs.values()) {
+			topicLog.close();
+		}
+		this.topicLogs.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "SseEventLog[\"" + this.directory + "\", topics=" + this.topicLogs.size() + "]";
+	}
+
+
+	/**
+	 * The segments of a topic, oldest first. Appends and replays are brief,
+	 * as they only copy bytes into, or slice, the mapped segments, and are
+	 * serialized on the TopicLog.
+	 */
+	private final class TopicLog {
+
+		private final Path directory;
+
+		private final Deque<Segment> segments = new ArrayDeque<>();
+
+		private long lastSequence;
+
+		TopicLog(Path directory) throws IOException {
+			this.directory = directory;
+			Files.createDirectories(directory);
+			try (Stream<Path> files = Files.list(directory)) {
+				List<Path> paths = files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+				for (Path path : paths) {
+					Segment segment = Segment.open(path, segmentSize);
+					this.segments.addLast(segment);
+					this.lastSequence = Math.max(this.lastSequence, segment.getLastSequence());
+				}
+			}
+			if (!this.segments.isEmpty()) {
+				logger.debug("Opened " + this.segments.size() + " segments in " + directory);
+			}
+		}
+
+		synchronized long getLastSequence() {
+			return this.lastSequence;
+		}
+
+		synchronized void append(long sequence, SseFrame frame) {
+			Assert.isTrue(sequence > this.lastSequence, "Sequence must be greater than the last sequence");
+			int recordSize = HEADER_SIZE + frame.getLength();
+			Assert.isTrue(recordSize <= segmentSize, "Frame is larger than a segment");
+			Segment segment = this.segments.peekLast();
+			try {
+				if (segment == null || !segment.hasSpace(recordSize)) {
+					if (segment != null) {
+						segment.force();
+					}
+					segment = Segment.create(this.directory, sequence, segmentSize);
+					this.segments.addLast(segment);
+					enforceRetention();
+				}
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException("Failed to create segment in " + this.directory, ex);
+			}
+			segment.append(sequence, frame);
+			this.lastSequence = sequence;
+		}
+
+		synchronized Replay replay(long afterSequence, long lastSequence) {
+			List<ByteBuffer> frames = new ArrayList<>();
+			for (Segment segment : this.segments) {
+				if (segment.getLastSequence() > afterSequence && segment.getFirstSequence() <= lastSequence) {
+					segment.collectFrames(afterSequence, lastSequence, frames);
+				}
+			}
+			return new Replay(frames);
+		}
+
+		synchronized void enforceRetention() {
+			long size = (long) this.segments.size() * segmentSize;
+			long minTime = System.currentTimeMillis() - retentionMillis;
+			Iterator<Segment> iterator = this.segments.iterator();
+			while (iterator.hasNext() && this.segments.size() > 1) {
+				Segment segment = iterator.next();
+				if (size <= maxTopicBytes && segment.getLastAppendTime() >= minTime) {
+					break;
+				}
+				iterator.remove();
+				size -= segmentSize;
+				segment.delete();
+			}
+		}
+
+		synchronized void close() {
+			for (Segment segment : this.segments) {
+				segment.force();
+				segment.close();
+			}
+			this.segments.clear();
+		}
+	}
+
+
+	/**
+	 * A memory-mapped segment file, and its sparse index.
+	 */
+	private static final class Segment {
+
+		private final Path path;
+
+		private final FileChannel channel;
+
+		private final MappedByteBuffer buffer;
+
+		private long[] indexSequences = new long[64];
+
+		private int[] indexOffsets = new int[64];
+
+		private int indexSize;
+
+		private int lastIndexedOffset = -INDEX_INTERVAL;
+
+		private long firstSequence;
+
+		private long lastSequence;
+
+		private long lastAppendTime;
+
+		private Segment(Path path, FileChannel channel, int size) throws IOException {
+			this.path = path;
+			this.channel = channel;
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+
+		static Segment create(Path directory, long firstSequence, int size) throws IOException {
+			Path path = directory.resolve(String.format("%020d", firstSequence) + SEGMENT_SUFFIX);
+			FileChannel channel = FileChannel.open(path,
+					StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			Segment segment = new Segment(path, channel, size);
+			segment.lastAppendTime = System.currentTimeMillis();
+			return segment;
+		}
+
+		static Segment open(Path path, int size) throws IOException {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			Segment segment = new Segment(path, channel, (int) Math.max(size, channel.size()));
+			segment.recover();
+			segment.lastAppendTime = Files.getLastModifiedTime(path).toMillis();
+			return segment;
+		}
+
+		/**
+		 * Scan the records to find the end of the segment, and rebuild the index.
+		 */
+		private void recover() {
+			int offset = 0;
+			while (offset + HEADER_SIZE <= this.buffer.capacity()) {
+				int length = this.buffer.getInt(offset);
+				if (length <= 0 || offset + HEADER_SIZE + length > this.buffer.capacity()) {
+					break;
+				}
+				long sequence = this.buffer.getLong(offset + Integer.BYTES);
+				recordAppended(sequence, offset);
+				offset += HEADER_SIZE + length;
+			}
+			this.buffer.position(offset);
+		}
+
+		long getFirstSequence() {
+			return this.firstSequence;
+		}
+
+		long getLastSequence() {
+			return this.lastSequence;
+		}
+
+		long getLastAppendTime() {
+			return this.lastAppendTime;
+		}
+
+		boolean hasSpace(int recordSize) {
+			return (this.buffer.remaining() >= recordSize);
+		}
+
+		void append(long sequence, SseFrame frame) {
+			int offset = this.buffer.position();
+			this.buffer.position(offset + Integer.BYTES);
+			this.buffer.putLong(sequence);
+			frame.writeTo(this.buffer);
+			// Length last, so a partial record reads as the end of the segment
+			this.buffer.putInt(offset, frame.getLength());
+			recordAppended(sequence, offset);
+			this.lastAppendTime = System.currentTimeMillis();
+		}
+
+		private void recordAppended(long sequence, int offset) {
+			if (this.firstSequence == 0) {
+				this.firstSequence = sequence;
+			}
+			this.lastSequence = sequence;
+			if (offset - this.lastIndexedOffset >= INDEX_INTERVAL) {
+				if (this.indexSize == this.indexSequences.length) {
+					this.indexSequences = Arrays.copyOf(this.indexSequences, this.indexSize * 2);
+					this.indexOffsets = Arrays.copyOf(this.indexOffsets, this.indexSize * 2);
+				}
+				this.indexSequences[this.indexSize] = sequence;
+				this.indexOffsets[this.indexSize] = offset;
+				this.indexSize++;
+				this.lastIndexedOffset = offset;
+			}
+		}
+
+		/**
+		 * Add read-only slices of the frames in the given range of sequences.
+		 */
+		void collectFrames(long afterSequence, long lastSequence, List<ByteBuffer> frames) {
+			int offset = findOffset(afterSequence + 1);
+			int end = this.buffer.position();
+			while (offset < end) {
+				int length = this.buffer.getInt(offset);
+				long sequence = this.buffer.getLong(offset + Integer.BYTES);
+				if (sequence > lastSequence) {
+					break;
+				}
+				if (sequence > afterSequence) {
+					frames.add(this.buffer.slice(offset + HEADER_SIZE, length).asReadOnlyBuffer());
+				}
+				offset += HEADER_SIZE + length;
+			}
+		}
+
+		/**
+		 * Return the offset of the last indexed record at or before the given
+		 * sequence, from where to scan.
+		 */
+		private int findOffset(long sequence) {
+			int index = Arrays.binarySearch(this.indexSequences, 0, this.indexSize, sequence);
+			if (index < 0) {
+				index = -index - 2;
+			}
+			return (index >= 0 ? this.indexOffsets[index] : 0);
+		}
+
+		void force() {
+			this.buffer.force();
+		}
+
+		void close() {
+			try {
+				this.channel.close();
+			}
+			catch (IOException ex) {
+				logger.debug("Failed to close " + this.path, ex);
+			}
+		}
+
+		void delete() {
+			close();
+			try {
+				Files.deleteIfExists(this.path);
+				logger.debug("Removed segment " + this.path);
+			}
+			catch (IOException ex) {
+				logger.warn("Failed to remove segment " + this.path, ex);
+			}
+		}
+	}
+
+
+	/**
+	 * Events to replay, as read-only slices of the mapped segments. Write it
+	 * to a response with {@link SseEventLogMessageConverter}.
+	 */
+	public static final class Replay {
+
+		private final List<ByteBuffer> frames;
+
+		Replay(List<ByteBuffer> frames) {
+			this.frames = frames;
+		}
+
+		/**
+		 * Return the number of events to replay.
+		 */
+		public int getEventCount() {
+			return this.frames.size();
+		}
+
+		/**
+		 * Return the total number of bytes of the events.
+		 */
+		public long getByteCount() {
+			long count = 0;
+			for (ByteBuffer frame : this.frames) {
+				count += frame.remaining();
+			}
+			return count;
+		}
+
+		/**
+		 * Write the events to the given channel.
+		 */
+		public void writeTo(WritableByteChannel channel) throws IOException {
+			for (ByteBuffer frame : this.frames) {
+				ByteBuffer source = frame.duplicate();
+				while (source.hasRemaining()) {
+					channel.write(source);
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Replay[" + getEventCount() + " events, " + getByteCount() + " bytes]";
+		}
+	}
+
+}
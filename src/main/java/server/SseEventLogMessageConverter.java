@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Converter that writes an {@link SseEventLog.Replay} to the response,
+ * streaming from the mapped segments of the log, rather than reading the
+ * events into byte arrays first.
+ *
+ * <p>The response stream of a servlet container is not a file or socket
+ * channel, so {@code FileChannel.transferTo} cannot do a zero-copy transfer
+ * to it. Instead, the bytes are copied in chunks into the response buffer.
+ */
+public class SseEventLogMessageConverter extends AbstractHttpMessageConverter<SseEventLog.Replay> {
+
+	public SseEventLogMessageConverter() {
+		super(MediaType.TEXT_EVENT_STREAM);
+	}
+
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return SseEventLog.Replay.class == clazz;
+	}
+
+	@Override
+	protected boolean canRead(@Nullable MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	protected SseEventLog.Replay readInternal(Class<? extends SseEventLog.Replay> clazz, HttpInputMessage inputMessage) {
+		throw new HttpMessageNotReadableException("Reading is not supported", inputMessage);
+	}
+
+	@Override
+	protected void writeInternal(SseEventLog.Replay replay, HttpOutputMessage outputMessage) throws IOException {
+		// Not closed, as that would close the response stream
+		replay.writeTo(Channels.newChannel(outputMessage.getBody()));
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * An immutable, pre-encoded {@code text/event-stream} frame: the UTF-8 bytes
+ * of the {@code id:}, {@code event:}, {@code retry:}, and {@code data:} lines
+ * of an event, and the blank line that ends it.
+ *
+ * <p>Unlike an {@link SseEmitter.SseEventBuilder}, which is serialized through
+ * the message converters on every send, a frame is encoded once, and sending
+ * it to an emitter writes the same bytes through the
+ * {@code ByteArrayHttpMessageConverter}, which is first in the list of
+ * converters. Hot loops and broadcasts to many emitters can then serialize an
+ * event once, with only a copy of the bytes per connection.
+ */
+public final class SseFrame {
+
+	private final byte[] content;
+
+	private final @Nullable String id;
+
+	private final Set<DataWithMediaType> items;
+
+
+	private SseFrame(byte[] content, @Nullable String id) {
+		this.content = content;
+		this.id = id;
+		this.items = Set.of(new DataWithMediaType(content, MediaType.TEXT_EVENT_STREAM));
+	}
+
+
+	/**
+	 * Return the value of the {@code id} field, if the frame has one.
+	 */
+	public @Nullable String getId() {
+		return this.id;
+	}
+
+	/**
+	 * Return the number of bytes in the frame.
+	 */
+	public int getLength() {
+		return this.content.length;
+	}
+
+	/**
+	 * Return a copy of the encoded frame.
+	 */
+	public byte[] toByteArray() {
+		return this.content.clone();
+	}
+
+	/**
+	 * Write the encoded frame to the given stream.
+	 */
+	public void writeTo(OutputStream outputStream) throws IOException {
+		outputStream.write(this.content);
+	}
+
+	/**
+	 * Write the encoded frame to the given buffer.
+	 */
+	void writeTo(ByteBuffer buffer) {
+		buffer.put(this.content);
+	}
+
+	/**
+	 * Send the encoded frame to the given emitter.
+	 */
+	public void sendTo(SseEmitter emitter) throws IOException {
+		emitter.send(this.items);
+	}
+
+	/**
+	 * Return the frame as the items to pass to {@link SseEmitter#send(Set)}.
+	 */
+	Set<DataWithMediaType> getItems() {
+		return this.items;
+	}
+
+
+	@Override
+	public boolean equals(@Nullable Object other) {
+		return (this == other || (other instanceof SseFrame that && Arrays.equals(this.content, that.content)));
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.content);
+	}
+
+	@Override
+	public String toString() {
+		return "SseFrame[" + new String(this.content, StandardCharsets.UTF_8).strip() + "]";
+	}
+
+
+	/**
+	 * Create a frame with a single {@code data} field.
+	 */
+	public static SseFrame data(String data) {
+		return builder().data(data).build();
+	}
+
+	/**
+	 * Create a frame with a single comment line, e.g. as a heartbeat.
+	 */
+	public static SseFrame comment(String comment) {
+		return builder().comment(comment).build();
+	}
+
+	/**
+	 * Return a builder for a frame.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+
+	/**
+	 * Builder for an {@link SseFrame}, with the same fields as
+	 * {@link SseEmitter.SseEventBuilder}, but with {@code String} data only.
+	 */
+	public static final class Builder {
+
+		private final StringBuilder sb = new StringBuilder();
+
+		private @Nullable String id;
+
+		private Builder() {
+		}
+
+		/**
+		 * Add an SSE "id" line.
+		 * @throws IllegalArgumentException if the id contains a line break,
+		 * or a NUL character, which clients ignore an id for
+		 */
+		public Builder id(String id) {
+			Assert.notNull(id, "Id must not be null");
+			Assert.isTrue(id.indexOf('\0') == -1, "Id must not contain NUL");
+			this.id = id;
+			return appendLine("id:", id);
+		}
+
+		/**
+		 * Add an SSE "event" line.
+		 * @throws IllegalArgumentException if the name contains a line break
+		 */
+		public Builder name(String name) {
+			return appendLine("event:", name);
+		}
+
+		/**
+		 * Add an SSE "retry" line.
+		 */
+		public Builder reconnectTime(Duration reconnectTime) {
+			return appendLine("retry:", String.valueOf(reconnectTime.toMillis()));
+		}
+
+		/**
+		 * Add an SSE comment line.
+		 * @throws IllegalArgumentException if the comment contains a line break
+		 */
+		public Builder comment(String comment) {
+			return appendLine(":", comment);
+		}
+
+		/**
+		 * Add SSE "data" lines, one per line of the given data.
+		 */
+		public Builder data(String data) {
+			for (String line : data.split("\r\n|\r|\n", -1)) {
+				append("data:", line);
+			}
+			return this;
+		}
+
+		/**
+		 * Append a field that must fit on one line, as a line break in its
+		 * value would add fields, or events, to the frame.
+		 */
+		private Builder appendLine(String field, String value) {
+			Assert.notNull(value, "Value must not be null");
+			Assert.isTrue(value.indexOf('\n') == -1 && value.indexOf('\r') == -1,
+					() -> "Value for \"" + field + "\" must not contain a line break");
+			return append(field, value);
+		}
+
+		private Builder append(String field, String value) {
+			Assert.notNull(value, "Value must not be null");
+			this.sb.append(field).append(value).append('\n');
+			return this;
+		}
+
+		/**
+		 * Encode the frame, with the blank line that ends the event.
+		 */
+		public SseFrame build() {
+			Assert.state(!this.sb.isEmpty(), "Frame has no fields");
+			return new SseFrame((this.sb + "\n").getBytes(StandardCharsets.UTF_8), this.id);
+		}
+	}
+
+}
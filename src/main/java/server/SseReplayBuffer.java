@@ -0,0 +1,196 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+
+/**
+ * Ring buffer with the most recent events of a stream, to replay the events
+ * a client missed when it reconnects with a {@code Last-Event-ID} header.
+ *
+ * <p>The buffer keeps at most a fixed number of events, and events older
+ * than the maximum age are not replayed. Each event is given a sequence
+ * number, and events with an id are also indexed by id, so the events after
+ * a given id can be found without a scan.
+ *
+ * <p>Appending is serialized, but reading is lock-free: each slot is written
+ * with a volatile write before the sequence of the last event is published,
+ * and a reader that is lapped by the writer detects that from the sequence
+ * in the slot. Replaying to many reconnecting clients therefore does not
+ * hold back publishing.
+ */
+public class SseReplayBuffer {
+
+	private final AtomicReferenceArray<@Nullable Entry> entries;
+
+	private final long maxAgeNanos;
+
+	private final Map<String, Long> sequencesById = new ConcurrentHashMap<>();
+
+	private volatile long lastSequence;
+
+
+	/**
+	 * Create a buffer.
+	 * @param capacity the maximum number of events to keep
+	 * @param maxAge the maximum age of events to replay
+	 */
+	public SseReplayBuffer(int capacity, Duration maxAge) {
+		this(capacity, maxAge, 0);
+	}
+
+	/**
+	 * Create a buffer that continues the sequence numbers of a stream, e.g.
+	 * from a durable log.
+	 * @param capacity the maximum number of events to keep
+	 * @param maxAge the maximum age of events to replay
+	 * @param lastSequence the sequence number of the last event before the
+	 * first one to be appended
+	 */
+	public SseReplayBuffer(int capacity, Duration maxAge, long lastSequence) {
+		Assert.isTrue(capacity > 0, "Capacity must be greater than 0");
+		Assert.isTrue(!maxAge.isNegative() && !maxAge.isZero(), "maxAge must be positive");
+		this.entries = new AtomicReferenceArray<>(capacity);
+		this.maxAgeNanos = maxAge.toNanos();
+		this.lastSequence = lastSequence;
+	}
+
+
+	/**
+	 * Return the capacity of the buffer.
+	 */
+	public int getCapacity() {
+		return this.entries.length();
+	}
+
+	/**
+	 * Return the sequence number of the last appended event, or 0 if none.
+	 */
+	public long getLastSequence() {
+		return this.lastSequence;
+	}
+
+	/**
+	 * Append a pre-encoded frame, indexed by its id, if it has one.
+	 */
+	public Entry append(SseFrame frame) {
+		return append(frame.getId(), frame.getItems());
+	}
+
+	/**
+	 * Append an event as the items to pass to
+	 * {@link org.springframework.web.servlet.mvc.method.annotation.SseEmitter#send(Set)}.
+	 * An event appended without an id cannot be resumed from, even if its
+	 * items contain an {@code id} field, but it is replayed to clients that
+	 * resume from an earlier event.
+	 * @param id the id of the event, or {@code null} if it has none
+	 * @param items the encoded event
+	 */
+	public synchronized Entry append(@Nullable String id, Set<DataWithMediaType> items) {
+		long sequence = this.lastSequence + 1;
+		int index = indexOf(sequence);
+		Entry evicted = this.entries.get(index);
+		if (evicted != null && evicted.id() != null) {
+			this.sequencesById.remove(evicted.id(), evicted.sequence());
+		}
+		Entry entry = new Entry(sequence, id, System.nanoTime(), items);
+		this.entries.set(index, entry);
+		if (id != null) {
+			this.sequencesById.put(id, sequence);
+		}
+		this.lastSequence = sequence;
+		return entry;
+	}
+
+	/**
+	 * Return the events after the event with the given id, oldest first, or
+	 * {@code null} if they cannot all be replayed, because the id is not known,
+	 * e.g. as the event was evicted, or because events after it have expired.
+	 * In that case, the client missed more than can be replayed from here.
+	 */
+	public @Nullable List<Entry> getEntriesAfter(String lastEventId) {
+		Long sequence = this.sequencesById.get(lastEventId);
+		if (sequence == null) {
+			return null;
+		}
+		long last = this.lastSequence;
+		List<Entry> entries = getEntriesAfter(sequence);
+		if (entries.isEmpty() ? sequence < last : entries.getFirst().sequence() != sequence + 1) {
+			return null;
+		}
+		return entries;
+	}
+
+	/**
+	 * Return the retained events with a sequence number greater than the
+	 * given one, oldest first. The events are contiguous: if the writer laps
+	 * the reader, the events read before the lapped one are dropped, so the
+	 * result starts after the gap, and never has a hole in the middle.
+	 */
+	public List<Entry> getEntriesAfter(long sequence) {
+		long last = this.lastSequence;
+		long first = Math.max(sequence + 1, last - this.entries.length() + 1);
+		if (first > last) {
+			return List.of();
+		}
+		long minTime = System.nanoTime() - this.maxAgeNanos;
+		List<Entry> result = new ArrayList<>((int) (last - first + 1));
+		for (long i = first; i <= last; i++) {
+			Entry entry = this.entries.get(indexOf(i));
+			if (entry == null || entry.sequence() != i || entry.timestamp() - minTime < 0) {
+				// Lapped by the writer, or expired, so restart after the gap
+				result.clear();
+				continue;
+			}
+			result.add(entry);
+		}
+		return result;
+	}
+
+	private int indexOf(long sequence) {
+		return (int) (sequence % this.entries.length());
+	}
+
+
+	@Override
+	public String toString() {
+		return "SseReplayBuffer[capacity=" + getCapacity() + ", lastSequence=" + this.lastSequence + "]";
+	}
+
+
+	/**
+	 * An event in the buffer.
+	 * @param sequence the sequence number of the event in the stream
+	 * @param id the id of the event, or {@code null}
+	 * @param timestamp the {@link System#nanoTime()} when the event was appended
+	 * @param items the encoded event
+	 */
+	public record Entry(long sequence, @Nullable String id, long timestamp, Set<DataWithMediaType> items) {
+	}
+
+}
@@ -16,9 +16,13 @@
 
 package server;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.converter.HttpMessageConverters;
 import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -28,8 +32,33 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
 
 	@Bean
-	public SseController sseController() {
-		return new SseController();
+	public SseBroadcaster sseBroadcaster(SseEventLog eventLog, HashedWheelTimer timer) {
+		SseBroadcaster broadcaster = new SseBroadcaster(
+				Runtime.getRuntime().availableProcessors(), 1024, Duration.ofMinutes(5), eventLog);
+		broadcaster.startWatchdog(timer);
+		return broadcaster;
+	}
+
+	@Bean
+	public SseEventLog sseEventLog(HashedWheelTimer timer) {
+		SseEventLog eventLog = new SseEventLog(Path.of(System.getProperty("server.event-log.dir", "build/sse-event-log")));
+		timer.scheduleAtFixedRate(eventLog::enforceRetention, Duration.ofMinutes(1));
+		return eventLog;
+	}
+
+	@Bean
+	public HashedWheelTimer sseTimer() {
+		return new HashedWheelTimer();
+	}
+
+	@Bean
+	public SseController sseController(SseBroadcaster broadcaster, HashedWheelTimer timer) {
+		return new SseController(broadcaster, timer);
+	}
+
+	@Override
+	public void configureMessageConverters(HttpMessageConverters.ServerBuilder builder) {
+		builder.addCustomConverter(new SseEventLogMessageConverter());
 	}
 
 	@Override
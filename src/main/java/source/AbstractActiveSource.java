@@ -1,45 +1,36 @@
 package source;
 
-import java.io.IOException;
 import java.time.Duration;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
-
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.jspecify.annotations.Nullable;
 
 /**
  * Abstract base class for an {@link ActiveSource}. It provides most of the
  * implementation, receiving from the delegate Source and pushing into a
- * {@link BlockingQueue}. Subclasses implement methods to
+ * {@link PrefetchQueue}. Subclasses implement methods to
  * {@link #start(Callable) start} and {@link #stop() stop} the receiver task.
+ *
+ * <p>Items that the delegate Source can provide back-to-back, as indicated by
+ * {@link Source#canReceiveWithoutBlocking()}, are accumulated by the receiver
+ * task and put in the queue together. Consumers can use
+ * {@link #receiveBatch(Collection, int, Duration)} to drain everything that
+ * is available at once.
+ *
+ * <p>The queue, prefetch budget, overflow policy, and metrics can be
+ * configured as described in {@link AbstractPrefetchingSource}.
  */
-public abstract class AbstractActiveSource<T> implements ActiveSource<T> {
-
-	protected final Logger logger = LogManager.getLogger(getClass());
+public abstract class AbstractActiveSource<T> extends AbstractPrefetchingSource<T> {
 
-	private static final Object COMPLETE = new Object();
+	private static final int MAX_BATCH_SIZE = 64;
 
 
 	private final Source<T> delegate;
 
-	private final BlockingQueue<Object> queue;
-
-	private @Nullable T receivedItem;
-
-	private boolean started;
-
-	private volatile @Nullable Completion completion;
-
-	private volatile boolean closed;
-
 
 	public AbstractActiveSource(Source<T> delegate) {
 		this.delegate = delegate;
-		this.queue = new LinkedBlockingQueue<>(128);
 	}
 
 
@@ -53,114 +44,32 @@ public abstract class AbstractActiveSource<T> implements ActiveSource<T> {
 	 */
 	protected abstract void stop();
 
-
-	@Override
-	public boolean isClosed() {
-		return this.closed;
-	}
-
 	@Override
-	public boolean receiveNext() throws IOException, InterruptedException {
-		if (this.closed) {
-			return returnCompletion();
-		}
-		startIfNecessary();
-		try {
-			Object item = this.queue.take();
-			setReceivedItem(item);
-		}
-		catch (InterruptedException ex) {
-			close();
-			throw ex;
-		}
-		closeAfterCompletion();
-		return (this.receivedItem != null);
+	protected final void startProducing() {
+		start(new ReceiveTask());
 	}
 
 	@Override
-	public boolean tryReceiveNext(Duration timeout) throws IOException, InterruptedException {
-		if (this.closed) {
-			return returnCompletion();
-		}
-		startIfNecessary();
-		try {
-			Object item = this.queue.poll(TimeUnit.MILLISECONDS.convert(timeout), TimeUnit.MILLISECONDS);
-			setReceivedItem(item);
-		}
-		catch (InterruptedException ex) {
-			close();
-			throw ex;
-		}
-		closeAfterCompletion();
-		return (this.receivedItem != null);
-	}
-
-	@Override
-	public boolean tryReceiveNext() throws IOException {
-		if (this.closed) {
-			return returnCompletion();
-		}
-		startIfNecessary();
-		Object item = this.queue.poll();
-		setReceivedItem(item);
-		closeAfterCompletion();
-		return (this.receivedItem != null);
-	}
-
-	private boolean returnCompletion() throws IOException {
-		Completion c = this.completion;
-		if (c != null) {
-			c.throwIfCompletedExceptionally();
-		}
-		return false;
-	}
-
-	private void startIfNecessary() {
-		if (!this.started) {
-			this.started = true;
-			start(new ReceiveTask());
-		}
-	}
-
-	@SuppressWarnings("unchecked")
-	private void setReceivedItem(Object item) throws IOException {
-		if (item == COMPLETE) {
-			Completion c = this.completion;
-			if (c == null) {
-				throw new IllegalStateException("Completion not set");
-			}
-			c.throwIfCompletedExceptionally();
-		}
-		else {
-			this.receivedItem = (T) item;
-		}
-	}
-
-	private void closeAfterCompletion() {
-		if (this.completion != null && this.queue.isEmpty()) {
-			this.closed = true;
-		}
+	protected final void stopProducing() {
+		stop();
 	}
 
+	/**
+	 * Close the delegate Source, which the receiver task would otherwise
+	 * close. Subclasses that allocate resources for the receiver task up
+	 * front should override this to release them, and call this method.
+	 */
 	@Override
-	public T next() {
-		T item = this.receivedItem;
-		if (item == null) {
-			throw new IllegalStateException("No received event");
-		}
-		this.receivedItem = null;
-		return item;
+	protected void stopUnstarted() {
+		closeDelegate();
 	}
 
-	@Override
-	public void close() {
-		this.closed = true;
-		try {
-			stop();
-		}
-		finally {
-			this.queue.clear(); // discarded items
-		}
+	/**
+	 * Close the delegate Source, for subclasses to call if the receiver task
+	 * was started, but is stopped before it runs, and so does not close it.
+	 */
+	protected final void closeDelegate() {
+		this.delegate.close();
 	}
 
 
@@ -171,35 +80,25 @@ public abstract class AbstractActiveSource<T> implements ActiveSource<T> {
 
 
 	/**
-	 * Represents the completion of the receiver task.
-	 */
-	private record Completion(@Nullable Throwable exception) {
-
-		public void throwIfCompletedExceptionally() throws IOException {
-			if (exception() == null) {
-				return;
-			}
-			switch (exception) {
-				case IOException ex -> throw ex;
-				case RuntimeException ex -> throw ex;
-				case Throwable ex -> throw new IllegalStateException(ex);
-			}
-		}
-	}
-
-
-	/**
-	 * Receive items from the delegate Source, and put them in the BlockingQueue.
+	 * Receive items from the delegate Source, and put them in the PrefetchQueue.
+	 * Items that can be received without blocking are accumulated, up to
+	 * {@link #MAX_BATCH_SIZE}, and put in the queue together.
 	 */
 	private class ReceiveTask implements Callable<Void> {
 
+		private final List<Object> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
 		@Override
 		public Void call() throws Exception {
 			try (delegate) {
 				try {
 					while (delegate.receiveNext()) {
-						queue.put(delegate.next());
+						this.batch.add(delegate.next());
+						if (this.batch.size() >= MAX_BATCH_SIZE || !delegate.canReceiveWithoutBlocking()) {
+							publishBatch();
+						}
 					}
+					publishBatch();
 					complete(null);
 				}
 				catch (InterruptedException ex) {
@@ -207,15 +106,16 @@ public abstract class AbstractActiveSource<T> implements ActiveSource<T> {
 					throw ex;
 				}
 				catch (Throwable ex) {
+					publishBatch();
 					complete(ex);
 				}
 			}
 			return null;
 		}
 
-		private void complete(@Nullable Throwable ex) throws InterruptedException {
-			completion = new Completion(ex);
-			queue.put(COMPLETE);
+		private void publishBatch() throws InterruptedException {
+			publish(this.batch);
+			this.batch.clear();
 		}
 	}
 
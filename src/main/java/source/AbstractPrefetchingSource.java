@@ -0,0 +1,513 @@
+package source;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Abstract base class for an {@link ActiveSource} that hands items from a
+ * producer to consumers through a {@link PrefetchQueue}. It implements the
+ * consumer side, and subclasses implement the producer side, which calls
+ * {@link #publish(List)} or {@link #tryPublish(Object)} to put items in the
+ * queue, and {@link #complete(Throwable)} at the end.
+ *
+ * <p>The producer is started on the first call to receive, and is either a
+ * receiver task that pulls from a delegate Source, as in
+ * {@link AbstractActiveSource}, or a callback-driven source that pushes items
+ * as they arrive, and uses {@link #tryPublish(Object)} and
+ * {@link #itemsConsumed(int)} for flow control rather than blocking.
+ * Producer methods must not be called concurrently, since the default
+ * {@link RingBufferPrefetchQueue} supports a single producer.
+ *
+ * <p>By default, a {@link RingBufferPrefetchQueue} with 128 slots is used.
+ * This can be changed via {@link #setPrefetchQueue(PrefetchQueue)}. With a
+ * {@link #setPrefetchBudget(PrefetchBudget) PrefetchBudget}, e.g. the
+ * process-wide {@link PrefetchBudget#shared() shared} one, the queue admits
+ * items only while the budget has room for them by their estimated size, and
+ * a blocking producer only up to a depth that adapts to the arrival and
+ * consumption rates, see {@link AdaptivePrefetchQueue}. This keeps the
+ * memory held by many Sources with large items bounded.
+ *
+ * <p>Consumers park when the queue is empty, unless a different
+ * {@link #setWaitStrategy(WaitStrategy) WaitStrategy} is configured, e.g. to
+ * spin on dedicated cores for lower latency. Timeouts are applied with
+ * nanosecond precision.
+ *
+ * <p>Queue depth, and time spent waiting by the producer and by consumers,
+ * can be observed through {@link #setMetrics(SourceMetrics)}.
+ *
+ * <p>The Source may be closed from another thread, e.g. by an
+ * {@link ActiveSourceGroup}, in which case a consumer waiting to receive is
+ * woken up, and receives nothing. Closing puts the completion sentinel in
+ * the queue after the producer is stopped. A callback-driven producer may
+ * still be stopping at that point, but the queue is discarded once closed,
+ * and any item wakes up the consumer.
+ */
+public abstract class AbstractPrefetchingSource<T> implements ActiveSource<T> {
+
+	protected final Logger logger = LogManager.getLogger(getClass());
+
+	private static final Object COMPLETE = new Object();
+
+
+	// Volatile, as close() may be called from another thread, e.g. by an ActiveSourceGroup
+	private volatile PrefetchQueue queue = new RingBufferPrefetchQueue(128);
+
+	private OverflowPolicy<? super T> overflowPolicy = OverflowPolicy.block();
+
+	private WaitStrategy waitStrategy = WaitStrategy.park();
+
+	private @Nullable PrefetchBudget prefetchBudget;
+
+	private @Nullable ToIntFunction<? super T> itemSizeEstimator;
+
+	private @Nullable SourceMetrics metrics;
+
+	private final List<Object> drained = new ArrayList<>(); // accessed by consumer only
+
+	private @Nullable T receivedItem;
+
+	private volatile boolean started;
+
+	private boolean stopped; // guarded by lifecycleMonitor
+
+	private final Object lifecycleMonitor = new Object();
+
+	private int queueHighWaterMark; // accessed by producer only
+
+	private volatile @Nullable Completion completion;
+
+	private volatile boolean closed;
+
+
+	/**
+	 * Configure the queue to hand items from the producer to consumers.
+	 * This must be set before the first call to receive, and must support
+	 * in-place replacement with a conflating {@link OverflowPolicy}.
+	 * <p>By default, this is a {@link RingBufferPrefetchQueue} with 128 slots.
+	 */
+	public void setPrefetchQueue(PrefetchQueue queue) {
+		Assert.notNull(queue, "PrefetchQueue is required");
+		Assert.state(!this.started, "Receiving has already started");
+		assertCompatible(queue, this.overflowPolicy);
+		this.queue = queue;
+	}
+
+	/**
+	 * Return the configured {@link #setPrefetchQueue(PrefetchQueue) queue}.
+	 * Once receiving has started with a
+	 * {@link #setPrefetchBudget(PrefetchBudget) prefetch budget}, this is the
+	 * {@link AdaptivePrefetchQueue} that wraps it.
+	 */
+	public PrefetchQueue getPrefetchQueue() {
+		return this.queue;
+	}
+
+	/**
+	 * Configure how {@link #publish(List)} handles items when the queue is full.
+	 * This must be set before the first call to receive.
+	 * <p>By default, this is {@link OverflowPolicy#block()}.
+	 */
+	public void setOverflowPolicy(OverflowPolicy<? super T> overflowPolicy) {
+		Assert.notNull(overflowPolicy, "OverflowPolicy is required");
+		Assert.state(!this.started, "Receiving has already started");
+		assertCompatible(this.queue, overflowPolicy);
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	private static void assertCompatible(PrefetchQueue queue, OverflowPolicy<?> overflowPolicy) {
+		if (overflowPolicy.requiresReplace() && !queue.isReplaceSupported()) {
+			throw new IllegalArgumentException(
+					overflowPolicy + " requires a PrefetchQueue with in-place replacement, unlike " + queue);
+		}
+	}
+
+	/**
+	 * Return the configured {@link #setOverflowPolicy(OverflowPolicy) policy},
+	 * e.g. to check its counters.
+	 */
+	public OverflowPolicy<? super T> getOverflowPolicy() {
+		return this.overflowPolicy;
+	}
+
+	/**
+	 * Configure how consumers wait for items when the queue is empty.
+	 * <p>By default, this is {@link WaitStrategy#park()}.
+	 */
+	public void setWaitStrategy(WaitStrategy waitStrategy) {
+		Assert.notNull(waitStrategy, "WaitStrategy is required");
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Return the configured {@link #setWaitStrategy(WaitStrategy) WaitStrategy}.
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+
+	/**
+	 * Configure a byte budget, e.g. the {@link PrefetchBudget#shared() shared}
+	 * one, that queued items are charged to. Each item is charged by its
+	 * estimated size, and the depth of the queue adapts to the rates at which
+	 * items arrive and are consumed, see {@link AdaptivePrefetchQueue}.
+	 * This must be set before the first call to receive.
+	 * <p>By default, this is not set, and items are admitted up to the
+	 * capacity of the queue.
+	 */
+	public void setPrefetchBudget(@Nullable PrefetchBudget prefetchBudget) {
+		Assert.state(!this.started, "Receiving has already started");
+		this.prefetchBudget = prefetchBudget;
+	}
+
+	/**
+	 * Configure a function to estimate the size of an item in bytes, for the
+	 * {@link #setPrefetchBudget(PrefetchBudget) prefetch budget}.
+	 * This must be set before the first call to receive.
+	 * <p>By default, this is not set, and the
+	 * {@link PrefetchBudget#getDefaultItemSize() default item size} is used.
+	 */
+	public void setItemSizeEstimator(@Nullable ToIntFunction<? super T> itemSizeEstimator) {
+		Assert.state(!this.started, "Receiving has already started");
+		this.itemSizeEstimator = itemSizeEstimator;
+	}
+
+	/**
+	 * Configure a listener for metrics of the producer and of consumers.
+	 * This must be set before the first call to receive.
+	 * <p>By default, this is not set, and nothing is measured.
+	 */
+	public void setMetrics(@Nullable SourceMetrics metrics) {
+		Assert.state(!this.started, "Receiving has already started");
+		this.metrics = metrics;
+	}
+
+
+	/**
+	 * Start producing items, on the first call to receive.
+	 */
+	protected abstract void startProducing();
+
+	/**
+	 * Stop producing items, when the Source is closed after it was started.
+	 */
+	protected abstract void stopProducing();
+
+	/**
+	 * Release resources, when the Source is closed before it was started,
+	 * and {@link #stopProducing()} is therefore not called.
+	 * <p>By default, this does nothing.
+	 */
+	protected void stopUnstarted() {
+	}
+
+	/**
+	 * Called on the consumer thread after items were taken from the queue.
+	 * Producers that stop when the queue is full can override this to resume.
+	 * <p>By default, this does nothing.
+	 */
+	protected void itemsConsumed(int count) {
+	}
+
+
+	// Producer side
+
+	/**
+	 * Put the given items in the queue according to the configured
+	 * {@link #setOverflowPolicy(OverflowPolicy) OverflowPolicy}, which may
+	 * block until there is space.
+	 */
+	protected final void publish(List<?> items) throws InterruptedException {
+		if (items.isEmpty()) {
+			return;
+		}
+		SourceMetrics metrics = this.metrics;
+		if (metrics == null) {
+			this.overflowPolicy.publish(this.queue, items);
+			return;
+		}
+		long startTime = System.nanoTime();
+		this.overflowPolicy.publish(this.queue, items);
+		itemsQueued(metrics, items.size(), System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Put the given item in the queue, if there is space, and without blocking.
+	 * Once closed, the item is discarded, and this returns {@code true}.
+	 * @return {@code false} if the queue is full
+	 */
+	protected final boolean tryPublish(T item) {
+		if (this.closed) {
+			return true;
+		}
+		if (!this.queue.offer(item)) {
+			return false;
+		}
+		SourceMetrics metrics = this.metrics;
+		if (metrics != null) {
+			itemsQueued(metrics, 1, 0);
+		}
+		return true;
+	}
+
+	private void itemsQueued(SourceMetrics metrics, int count, long blockedNanos) {
+		int queueSize = this.queue.size();
+		this.queueHighWaterMark = Math.max(this.queueHighWaterMark, queueSize);
+		metrics.itemsQueued(this, count, blockedNanos, queueSize, this.queueHighWaterMark);
+	}
+
+	/**
+	 * Complete the Source, after published items are consumed, either
+	 * successfully, or with the given exception. This does not block.
+	 */
+	protected final void complete(@Nullable Throwable ex) {
+		this.completion = new Completion(ex);
+		if (!this.closed) {
+			// If the queue is full, consumers see the completion once they have drained it,
+			// and once closed, there is no consumer to drain the queue
+			this.queue.offer(COMPLETE);
+		}
+	}
+
+
+	// Consumer side
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	@Override
+	public boolean receiveNext() throws IOException, InterruptedException {
+		if (this.closed) {
+			return returnCompletion();
+		}
+		startIfNecessary();
+		try {
+			long startTime = (this.metrics != null ? System.nanoTime() : 0);
+			Object item = this.waitStrategy.take(this.queue);
+			consumerWaited(startTime, true);
+			if (this.closed) {
+				return false;
+			}
+			setReceivedItem(item);
+		}
+		catch (InterruptedException ex) {
+			close();
+			throw ex;
+		}
+		closeAfterCompletion();
+		return received();
+	}
+
+	@Override
+	public boolean tryReceiveNext(Duration timeout) throws IOException, InterruptedException {
+		if (this.closed) {
+			return returnCompletion();
+		}
+		startIfNecessary();
+		try {
+			long startTime = (this.metrics != null ? System.nanoTime() : 0);
+			Object item = this.waitStrategy.poll(this.queue, TimeUnit.NANOSECONDS.convert(timeout));
+			consumerWaited(startTime, item != null);
+			if (this.closed) {
+				return false;
+			}
+			setReceivedItem(item);
+		}
+		catch (InterruptedException ex) {
+			close();
+			throw ex;
+		}
+		closeAfterCompletion();
+		return received();
+	}
+
+	@Override
+	public boolean tryReceiveNext() throws IOException {
+		if (this.closed) {
+			return returnCompletion();
+		}
+		startIfNecessary();
+		Object item = this.queue.poll();
+		setReceivedItem(item);
+		closeAfterCompletion();
+		return received();
+	}
+
+	@Override
+	public int receiveBatch(Collection<? super T> items, int maxItems, Duration timeout)
+			throws IOException, InterruptedException {
+
+		Assert.isTrue(maxItems > 0, "maxItems must be greater than 0");
+		if (this.closed) {
+			returnCompletion();
+			return 0;
+		}
+		startIfNecessary();
+		try {
+			long startTime = (this.metrics != null ? System.nanoTime() : 0);
+			Object item = this.waitStrategy.poll(this.queue, TimeUnit.NANOSECONDS.convert(timeout));
+			consumerWaited(startTime, item != null);
+			if (item == null || this.closed) {
+				return 0;
+			}
+			this.drained.add(item);
+			this.queue.drainTo(this.drained, maxItems - 1);
+			int count = addReceivedItems(items);
+			closeAfterCompletion();
+			if (count > 0) {
+				itemsConsumed(count);
+			}
+			return count;
+		}
+		catch (InterruptedException ex) {
+			close();
+			throw ex;
+		}
+		finally {
+			this.drained.clear();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private int addReceivedItems(Collection<? super T> items) throws IOException {
+		int count = 0;
+		for (Object item : this.drained) {
+			if (item == COMPLETE) {
+				if (count == 0) {
+					setReceivedItem(item);
+				}
+				break;
+			}
+			items.add((T) item);
+			count++;
+		}
+		return count;
+	}
+
+	private void consumerWaited(long startTime, boolean received) {
+		SourceMetrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.consumerWaited(this, System.nanoTime() - startTime, received);
+		}
+	}
+
+	private boolean returnCompletion() throws IOException {
+		Completion c = this.completion;
+		if (c != null) {
+			c.throwIfCompletedExceptionally();
+		}
+		return false;
+	}
+
+	private void startIfNecessary() {
+		if (this.started) {
+			return;
+		}
+		synchronized (this.lifecycleMonitor) {
+			// Not once closed, when resources for the producer may have been released
+			if (this.started || this.closed) {
+				return;
+			}
+			this.started = true;
+			if (this.prefetchBudget != null) {
+				this.queue = new AdaptivePrefetchQueue(
+						this.queue, this.prefetchBudget, this::estimateItemSize, COMPLETE);
+			}
+			startProducing();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private int estimateItemSize(Object item) {
+		PrefetchBudget budget = this.prefetchBudget;
+		if (budget == null) {
+			return 0;
+		}
+		return (this.itemSizeEstimator != null ?
+				this.itemSizeEstimator.applyAsInt((T) item) : budget.getDefaultItemSize());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void setReceivedItem(@Nullable Object item) throws IOException {
+		if (item == COMPLETE) {
+			Completion c = this.completion;
+			if (c == null) {
+				throw new IllegalStateException("Completion not set");
+			}
+			this.closed = true;
+			c.throwIfCompletedExceptionally();
+		}
+		else {
+			this.receivedItem = (T) item;
+		}
+	}
+
+	private void closeAfterCompletion() {
+		if (this.completion != null && this.queue.isEmpty()) {
+			this.closed = true;
+		}
+	}
+
+	private boolean received() {
+		if (this.receivedItem == null) {
+			return false;
+		}
+		itemsConsumed(1);
+		return true;
+	}
+
+	@Override
+	public T next() {
+		T item = this.receivedItem;
+		if (item == null) {
+			throw new IllegalStateException("No received event");
+		}
+		this.receivedItem = null;
+		return item;
+	}
+
+	@Override
+	public boolean canReceiveWithoutBlocking() {
+		return !this.queue.isEmpty();
+	}
+
+	@Override
+	public void close() {
+		boolean started;
+		synchronized (this.lifecycleMonitor) {
+			this.closed = true;
+			if (this.stopped) {
+				// Closed before, e.g. from another thread
+				return;
+			}
+			this.stopped = true;
+			started = this.started;
+		}
+		try {
+			if (started) {
+				stopProducing();
+			}
+			else {
+				stopUnstarted();
+			}
+		}
+		finally {
+			this.queue.clear(); // discarded items
+			// Wake up a consumer waiting in another thread, which then sees that the Source is closed
+			this.queue.offer(COMPLETE);
+		}
+	}
+
+}
@@ -34,7 +34,6 @@ public abstract class AbstractSource<T> implements Source<T> {
 				default -> false;
 			};
 		}
-		logger.debug("In receiveNext()...");
 		try {
 			T item = receiveItem();
 			if (item == null) {
@@ -43,7 +42,9 @@ public abstract class AbstractSource<T> implements Source<T> {
 				return false;
 			}
 			else {
-				logger.debug("received {}", item);
+				if (logger.isTraceEnabled()) {
+					logger.trace("Received " + item);
+				}
 				this.receivedItem = item;
 				return true;
 			}
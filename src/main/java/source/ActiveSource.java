@@ -2,11 +2,15 @@ package source;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Extension of {@code Source} that launches an active receiver task to prefetch
- * items from a delegate {@link Source}, and stores them in a
- * {@link java.util.concurrent.BlockingQueue}.
+ * items from a delegate {@link Source}, and stores them in a bounded
+ * {@link PrefetchQueue}.
  *
  * @param <T> the types of items received through the Source
  */
@@ -38,4 +42,37 @@ public interface ActiveSource<T> extends Source<T> {
 	 */
 	boolean tryReceiveNext() throws IOException;
 
+	/**
+	 * Request to receive a batch of items, waiting for up to the specified time
+	 * for at least one item, and then draining any further items that are
+	 * available without blocking, up to the given maximum. This allows
+	 * consumers of high-rate sources to pay the cost of the handoff from the
+	 * receiver task once per batch rather than once per item.
+	 * <p>Received items are added to the given collection, which can be
+	 * cleared and reused across calls. A return value of {@code 0} means that
+	 * no item could be received within the specified time, or that the Source
+	 * is {@link #isClosed() closed}.
+	 * @param items the collection to add received items to
+	 * @param maxItems the maximum number of items to add
+	 * @param timeout how long to wait for the first item
+	 * @return the number of items added to the collection
+	 */
+	int receiveBatch(Collection<? super T> items, int maxItems, Duration timeout)
+			throws IOException, InterruptedException;
+
+	/**
+	 * Return a lazy, sequential {@link Stream} of windows of the remaining
+	 * items, each of which ends when it reaches the given size, or spans the
+	 * given duration from its first item, also while no further items arrive,
+	 * e.g. to flush batches for bulk writes downstream in time. Closing the
+	 * Stream closes the Source.
+	 * @param maxSize the maximum number of items in a window
+	 * @param duration the maximum time from the first item in a window until
+	 * the window is emitted
+	 * @see WindowSpliterator
+	 */
+	default Stream<List<T>> streamWindows(int maxSize, Duration duration) {
+		return StreamSupport.stream(new WindowSpliterator<>(this, maxSize, duration), false).onClose(this::close);
+	}
+
 }
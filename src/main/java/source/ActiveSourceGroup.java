@@ -0,0 +1,203 @@
+package source;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Group of ActiveSources that share one executor for their receiver tasks,
+ * so that many sources can be started and stopped without the cost of
+ * creating an executor, or a {@code StructuredTaskScope}, for each.
+ *
+ * <p>Each ActiveSource created via {@link #add(Source)} can be closed on its
+ * own, which cancels only its receiver task, while {@link #close()} closes
+ * all sources in the group, and waits for their receiver tasks to stop. The
+ * number of receiver tasks that receive at the same time can be bounded, in
+ * which case further receiver tasks wait for a permit before they start
+ * receiving from their delegate Source.
+ *
+ * <p>Receiver tasks run on virtual threads. A shared executor is used rather
+ * than a {@code StructuredTaskScope}, because a scope can only be forked from
+ * the thread that opened it, while sources in a group are started from the
+ * threads that consume them.
+ */
+public class ActiveSourceGroup implements AutoCloseable {
+
+	private final ExecutorService executor;
+
+	private final @Nullable Semaphore permits;
+
+	private final int maxActiveReceivers;
+
+	private final Set<GroupActiveSource<?>> sources = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean closed;
+
+
+	/**
+	 * Create a group without a limit on active receiver tasks.
+	 */
+	public ActiveSourceGroup() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create a group with a limit on the number of receiver tasks that
+	 * receive at the same time.
+	 */
+	public ActiveSourceGroup(int maxActiveReceivers) {
+		Assert.isTrue(maxActiveReceivers > 0, "maxActiveReceivers must be greater than 0");
+		this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("active-source-group-", 0).factory());
+		this.permits = (maxActiveReceivers != Integer.MAX_VALUE ? new Semaphore(maxActiveReceivers, true) : null);
+		this.maxActiveReceivers = maxActiveReceivers;
+	}
+
+
+	/**
+	 * Create an ActiveSource for the given Source, with its receiver task run
+	 * by this group. As for other ActiveSources, the receiver task starts on
+	 * the first call to receive, and the returned instance can be configured
+	 * before that.
+	 */
+	public <T> AbstractActiveSource<T> add(Source<T> source) {
+		Assert.state(!this.closed, "ActiveSourceGroup is closed");
+		GroupActiveSource<T> activeSource = new GroupActiveSource<>(source);
+		this.sources.add(activeSource);
+		if (this.closed) {
+			// Closed concurrently, and may have missed the new source
+			activeSource.close();
+			throw new IllegalStateException("ActiveSourceGroup is closed");
+		}
+		return activeSource;
+	}
+
+	/**
+	 * Return the number of sources in the group that are not closed.
+	 */
+	public int size() {
+		return this.sources.size();
+	}
+
+	/**
+	 * Return the number of receiver tasks that are receiving, as opposed to
+	 * waiting for a permit.
+	 */
+	public int getActiveReceiverCount() {
+		return (this.permits != null ? this.maxActiveReceivers - this.permits.availablePermits() : -1);
+	}
+
+	/**
+	 * Close all sources in the group, wait for their receiver tasks to stop,
+	 * and shut down the executor.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		for (GroupActiveSource<?> source : this.sources) {
+			source.close();
+		}
+		this.executor.close();
+	}
+
+	@Override
+	public String toString() {
+		return "ActiveSourceGroup[size=" + size() + ", maxActiveReceivers=" +
+				(this.permits != null ? this.maxActiveReceivers : "unbounded") + "]";
+	}
+
+
+	/**
+	 * ActiveSource with its receiver task run by the group executor.
+	 */
+	private final class GroupActiveSource<T> extends AbstractActiveSource<T> {
+
+		private volatile @Nullable Future<?> future;
+
+		private final CountDownLatch receiverLatch = new CountDownLatch(1);
+
+		private final AtomicBoolean running = new AtomicBoolean();
+
+		GroupActiveSource(Source<T> source) {
+			super(source);
+		}
+
+		@Override
+		protected void start(Callable<Void> receiver) {
+			// Set the Future before the task can run, so stop() does not miss it
+			FutureTask<Void> task = new FutureTask<>(() -> {
+				if (!this.running.compareAndSet(false, true)) {
+					// Stopped before it ran, and stop() closes the delegate
+					return null;
+				}
+				boolean acquired = false;
+				boolean called = false;
+				try {
+					if (permits != null) {
+						permits.acquire();
+						acquired = true;
+					}
+					called = true;
+					return receiver.call();
+				}
+				finally {
+					if (acquired) {
+						permits.release();
+					}
+					if (!called) {
+						// Interrupted while waiting for a permit
+						closeDelegate();
+					}
+					this.receiverLatch.countDown();
+				}
+			});
+			this.future = task;
+			executor.execute(task);
+		}
+
+		@Override
+		protected void stop() {
+			if (this.running.compareAndSet(false, true)) {
+				// The receiver task never started, or is not submitted yet, and won't run
+				Future<?> future = this.future;
+				if (future != null) {
+					future.cancel(false);
+				}
+				closeDelegate();
+				return;
+			}
+			// Set before the receiver task started running
+			Future<?> future = this.future;
+			Assert.state(future != null, "Expected Future of receiver task");
+			future.cancel(true);
+			try {
+				this.receiverLatch.await();
+			}
+			catch (InterruptedException ex) {
+				logger.info("Interrupted while waiting for receiver task to stop");
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				super.close();
+			}
+			finally {
+				sources.remove(this);
+			}
+		}
+	}
+
+}
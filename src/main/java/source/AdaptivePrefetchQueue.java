@@ -0,0 +1,422 @@
+package source;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link PrefetchQueue} decorator that admits items only while a shared
+ * {@link PrefetchBudget} has room for them, and for a producer that blocks,
+ * only up to a prefetch depth adapted to the rates at which items arrive and
+ * are consumed.
+ *
+ * <p>The depth applies to {@link #put} and {@link #putAll}, which wait for
+ * room. {@link #offer} is refused only when the underlying queue or the
+ * budget is full, so that dropping {@link OverflowPolicy OverflowPolicies},
+ * and callback-driven producers, see the same capacity as without this
+ * decorator, as long as there is budget.
+ *
+ * <p>The depth starts at the capacity of the underlying queue. Every 100
+ * milliseconds, the producer updates moving averages of the rates at which
+ * items arrive, including those still waiting for room, and are consumed.
+ * The target depth is what is consumed in twice the
+ * {@link #setWindow(Duration) window}, at the lower of the two rates. The
+ * depth moves towards the target, but shrinks by at most half per 100
+ * milliseconds, and doubles when the producer had to wait for room, so that
+ * a bursty Source gets its depth back. A fast Source with a fast consumer
+ * keeps a deep buffer, while an idle Source, or one with a slow consumer,
+ * shrinks down to a single item. An empty queue always admits one item, so
+ * that every Source makes progress, even when the budget is used up.
+ *
+ * <p>The size of items is estimated with a function, and averaged, and the
+ * budget is charged for the number of queued items times the average. The
+ * underlying queue keeps its capacity, which bounds the depth, but only
+ * queued items are charged for.
+ *
+ * <p>An optional sentinel item, e.g. one that marks completion, is neither
+ * counted as an arrival, nor charged for.
+ *
+ * <p>A producer waiting for room parks until a consumer takes an item, or,
+ * when waiting for the budget, to check again after 10 milliseconds, since
+ * room in the budget is made by the consumers of other Sources.
+ */
+public class AdaptivePrefetchQueue implements PrefetchQueue {
+
+	private static final long SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private static final long BUDGET_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+
+	private final PrefetchQueue delegate;
+
+	private final PrefetchBudget budget;
+
+	private final ToIntFunction<Object> sizeEstimator;
+
+	private final @Nullable Object sentinel;
+
+	private double windowSeconds = 0.1;
+
+	private final AtomicLong chargedBytes = new AtomicLong();
+
+	private volatile int depth;
+
+	private volatile int estimatedItemSize;
+
+	private volatile long consumedCount; // written by consumer only
+
+	private long arrivalCount; // accessed by producer only
+
+	private long sampleTime = System.nanoTime(); // accessed by producer only
+
+	private long sampleArrivalCount; // accessed by producer only
+
+	private long sampleConsumedCount; // accessed by producer only
+
+	private double arrivalRate; // accessed by producer only
+
+	private double consumptionRate; // accessed by producer only
+
+	private boolean throttled; // accessed by producer only
+
+	private volatile boolean sentinelQueued;
+
+	private volatile @Nullable Thread waitingProducer;
+
+
+	/**
+	 * Create an instance.
+	 * @param delegate the queue to hold items
+	 * @param budget the budget to charge queued items to
+	 * @param sizeEstimator to estimate the size of an item in bytes
+	 */
+	public AdaptivePrefetchQueue(PrefetchQueue delegate, PrefetchBudget budget, ToIntFunction<Object> sizeEstimator) {
+		this(delegate, budget, sizeEstimator, null);
+	}
+
+	/**
+	 * Create an instance with a sentinel item.
+	 * @param delegate the queue to hold items
+	 * @param budget the budget to charge queued items to
+	 * @param sizeEstimator to estimate the size of an item in bytes
+	 * @param sentinel an item that is not counted nor charged for, and is
+	 * expected to be the last one inserted, or {@code null} for none
+	 */
+	public AdaptivePrefetchQueue(PrefetchQueue delegate, PrefetchBudget budget,
+			ToIntFunction<Object> sizeEstimator, @Nullable Object sentinel) {
+
+		Assert.notNull(delegate, "PrefetchQueue is required");
+		Assert.notNull(budget, "PrefetchBudget is required");
+		Assert.notNull(sizeEstimator, "Size estimator is required");
+		this.delegate = delegate;
+		this.budget = budget;
+		this.sizeEstimator = sizeEstimator;
+		this.sentinel = sentinel;
+		this.depth = delegate.capacity();
+		this.estimatedItemSize = budget.getDefaultItemSize();
+	}
+
+
+	/**
+	 * Set how long the queued items should last at the consumption rate.
+	 * The depth is twice that, for headroom to grow into.
+	 * <p>By default, this is 100 milliseconds.
+	 */
+	public void setWindow(Duration window) {
+		Assert.isTrue(window.isPositive(), "Window must be positive");
+		this.windowSeconds = window.toNanos() / 1e9;
+	}
+
+	/**
+	 * Return the current number of items the queue admits.
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+	/**
+	 * Return the average estimated size of an item in bytes.
+	 */
+	public int getEstimatedItemSize() {
+		return this.estimatedItemSize;
+	}
+
+	/**
+	 * Return the number of bytes the queued items are charged for.
+	 */
+	public long getChargedBytes() {
+		return this.chargedBytes.get();
+	}
+
+
+	// Producer side
+
+	@Override
+	public boolean offer(Object item) {
+		if (item == this.sentinel) {
+			// Not limited by the depth, nor the budget
+			if (!this.delegate.offer(item)) {
+				return false;
+			}
+			this.sentinelQueued = true;
+			return true;
+		}
+		if (!add(item, false)) {
+			return false;
+		}
+		// Counted once accepted, as an overflow policy may retry after a refusal
+		this.arrivalCount++;
+		return true;
+	}
+
+	@Override
+	public void put(Object item) throws InterruptedException {
+		this.arrivalCount++;
+		while (!add(item, true)) {
+			awaitRoom();
+		}
+	}
+
+	private boolean add(Object item, boolean limitToDepth) {
+		if (getRoom(limitToDepth) == 0 || !this.delegate.offer(item)) {
+			return false;
+		}
+		itemAdded(item);
+		updateCharge();
+		return true;
+	}
+
+	@Override
+	public void putAll(List<?> items) throws InterruptedException {
+		this.arrivalCount += items.size();
+		int index = 0;
+		while (index < items.size()) {
+			int count = Math.min(getRoom(true), items.size() - index);
+			if (count == 0) {
+				awaitRoom();
+				continue;
+			}
+			// Within the depth, and therefore within the capacity of the delegate
+			this.delegate.putAll(items.subList(index, index + count));
+			for (int i = index; i < index + count; i++) {
+				itemAdded(items.get(i));
+			}
+			updateCharge();
+			index += count;
+		}
+	}
+
+	@Override
+	public @Nullable Object evict() {
+		Object item = this.delegate.evict();
+		if (item != null) {
+			updateCharge();
+		}
+		return item;
+	}
+
+	@Override
+	public boolean replace(Predicate<Object> matcher, Object item) {
+		return this.delegate.replace(matcher, item);
+	}
+
+	@Override
+	public boolean isReplaceSupported() {
+		return this.delegate.isReplaceSupported();
+	}
+
+	/**
+	 * Return how many items may be added now.
+	 * @param limitToDepth whether to limit to the depth, or else only to the
+	 * capacity of the underlying queue
+	 */
+	private int getRoom(boolean limitToDepth) {
+		adaptIfNecessary();
+		int size = this.delegate.size();
+		int capacityRoom = this.delegate.capacity() - size;
+		int room = capacityRoom;
+		if (limitToDepth) {
+			room = Math.max(0, this.depth - size);
+			if (room == 0 && capacityRoom > 0) {
+				this.throttled = true;
+			}
+		}
+		long budgetRoom = this.budget.getAvailableBytes() / Math.max(1, this.estimatedItemSize);
+		if (size == 0) {
+			budgetRoom = Math.max(1, budgetRoom);
+		}
+		return (int) Math.max(0, Math.min(room, budgetRoom));
+	}
+
+	private void itemAdded(Object item) {
+		int size = Math.max(0, this.sizeEstimator.applyAsInt(item));
+		int estimate = this.estimatedItemSize;
+		if (size != estimate) {
+			this.estimatedItemSize = estimate + (size - estimate) / 8;
+		}
+	}
+
+	private void adaptIfNecessary() {
+		long now = System.nanoTime();
+		long elapsed = now - this.sampleTime;
+		if (elapsed < SAMPLE_NANOS) {
+			return;
+		}
+		long consumed = this.consumedCount;
+		double seconds = elapsed / 1e9;
+		this.arrivalRate = average(this.arrivalRate, (this.arrivalCount - this.sampleArrivalCount) / seconds);
+		this.consumptionRate = average(this.consumptionRate, (consumed - this.sampleConsumedCount) / seconds);
+		this.sampleTime = now;
+		this.sampleArrivalCount = this.arrivalCount;
+		this.sampleConsumedCount = consumed;
+		int target = (int) Math.min(Integer.MAX_VALUE,
+				Math.ceil(2 * Math.min(this.arrivalRate, this.consumptionRate) * this.windowSeconds));
+		int depth = this.depth;
+		if (this.throttled) {
+			depth = Math.max(target, depth * 2);
+		}
+		else {
+			// Halve at most once per elapsed sample period
+			depth = Math.max(target, depth >> (int) Math.min(elapsed / SAMPLE_NANOS, 31));
+		}
+		this.depth = Math.max(1, Math.min(this.delegate.capacity(), depth));
+		this.throttled = false;
+	}
+
+	private static double average(double average, double sample) {
+		return (average + sample) / 2;
+	}
+
+	private void awaitRoom() throws InterruptedException {
+		this.waitingProducer = Thread.currentThread();
+		try {
+			if (getRoom(true) == 0) {
+				LockSupport.parkNanos(this, BUDGET_WAIT_NANOS);
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		finally {
+			this.waitingProducer = null;
+		}
+	}
+
+
+	// Consumer side
+
+	@Override
+	public @Nullable Object poll() {
+		return itemRemoved(this.delegate.poll());
+	}
+
+	@Override
+	public @Nullable Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return itemRemoved(this.delegate.poll(timeout, unit));
+	}
+
+	@Override
+	public Object take() throws InterruptedException {
+		Object item = this.delegate.take();
+		itemsRemoved(1);
+		return item;
+	}
+
+	@Override
+	public int drainTo(Collection<Object> target, int maxItems) {
+		int count = this.delegate.drainTo(target, maxItems);
+		if (count > 0) {
+			itemsRemoved(count);
+		}
+		return count;
+	}
+
+	@Override
+	public void clear() {
+		this.delegate.clear();
+		this.sentinelQueued = false;
+		updateCharge();
+	}
+
+	private @Nullable Object itemRemoved(@Nullable Object item) {
+		if (item != null) {
+			itemsRemoved(1);
+		}
+		return item;
+	}
+
+	private void itemsRemoved(int count) {
+		this.consumedCount = this.consumedCount + count;
+		updateCharge();
+		Thread producer = this.waitingProducer;
+		if (producer != null) {
+			LockSupport.unpark(producer);
+		}
+	}
+
+
+	/**
+	 * Charge the budget for the queued items, or credit it for removed ones.
+	 * Both sides call this, and whichever is last sets the charge, while the
+	 * budget gets the difference from the previous charge, so it stays
+	 * consistent with the sum of charges across queues. A side may set a
+	 * charge for a size that the other side has changed since, so the size
+	 * is checked again after the charge is set, and the charge recomputed.
+	 */
+	private void updateCharge() {
+		while (true) {
+			int count = getChargedItemCount();
+			long charge = (long) count * this.estimatedItemSize;
+			long previous = this.chargedBytes.getAndSet(charge);
+			if (charge != previous) {
+				this.budget.charge(charge - previous);
+			}
+			if (getChargedItemCount() == count) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Return the number of queued items, excluding the sentinel, which, as
+	 * the last item, remains queued until the queue is empty.
+	 */
+	private int getChargedItemCount() {
+		int size = this.delegate.size();
+		if (size == 0) {
+			return 0;
+		}
+		return (this.sentinelQueued ? size - 1 : size);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.delegate.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return this.delegate.size();
+	}
+
+	@Override
+	public int capacity() {
+		return this.delegate.capacity();
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptivePrefetchQueue[depth=" + this.depth + ", estimatedItemSize=" + this.estimatedItemSize +
+				", " + this.delegate + "]";
+	}
+
+}
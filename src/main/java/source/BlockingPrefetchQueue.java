@@ -0,0 +1,103 @@
+package source;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * {@link PrefetchQueue} that delegates to a {@link BlockingQueue}, e.g. a
+ * {@link java.util.concurrent.LinkedBlockingQueue}, for cases where its
+ * locking behavior is preferred over a {@link RingBufferPrefetchQueue}.
+ * <p>This does not support in-place {@link #replace replacement}, and
+ * therefore cannot be used with a conflating {@link OverflowPolicy}.
+ */
+public class BlockingPrefetchQueue implements PrefetchQueue {
+
+	private final BlockingQueue<Object> queue;
+
+	private final int capacity;
+
+
+	public BlockingPrefetchQueue(BlockingQueue<Object> queue) {
+		this.queue = queue;
+		this.capacity = queue.size() + queue.remainingCapacity();
+	}
+
+
+	@Override
+	public boolean offer(Object item) {
+		return this.queue.offer(item);
+	}
+
+	@Override
+	public void put(Object item) throws InterruptedException {
+		this.queue.put(item);
+	}
+
+	@Override
+	public void putAll(List<?> items) throws InterruptedException {
+		for (Object item : items) {
+			this.queue.put(item);
+		}
+	}
+
+	@Override
+	public @Nullable Object evict() {
+		return this.queue.poll();
+	}
+
+	@Override
+	public boolean replace(Predicate<Object> matcher, Object item) {
+		throw new UnsupportedOperationException("In-place replacement requires a RingBufferPrefetchQueue");
+	}
+
+	@Override
+	public @Nullable Object poll() {
+		return this.queue.poll();
+	}
+
+	@Override
+	public @Nullable Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.queue.poll(timeout, unit);
+	}
+
+	@Override
+	public Object take() throws InterruptedException {
+		return this.queue.take();
+	}
+
+	@Override
+	public int drainTo(Collection<Object> target, int maxItems) {
+		return this.queue.drainTo(target, maxItems);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.queue.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return this.queue.size();
+	}
+
+	@Override
+	public int capacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public void clear() {
+		this.queue.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "BlockingPrefetchQueue[" + this.queue.getClass().getSimpleName() + "]";
+	}
+
+}
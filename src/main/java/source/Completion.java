@@ -0,0 +1,22 @@
+package source;
+
+import java.io.IOException;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Represents the completion of a receiver task.
+ */
+record Completion(@Nullable Throwable exception) {
+
+	public void throwIfCompletedExceptionally() throws IOException {
+		if (exception() == null) {
+			return;
+		}
+		switch (exception) {
+			case IOException ex -> throw ex;
+			case RuntimeException ex -> throw ex;
+			case Throwable ex -> throw new IllegalStateException(ex);
+		}
+	}
+}
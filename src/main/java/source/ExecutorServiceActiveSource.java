@@ -12,6 +12,9 @@ import org.springframework.util.Assert;
 
 /**
  * ActiveSource that uses {@link ExecutorService} to execute the receiver task.
+ * The ExecutorService is created for each ActiveSource, and shut down when
+ * the ActiveSource is closed. To share one executor across many sources, use
+ * {@link ActiveSourceGroup}.
  */
 public class ExecutorServiceActiveSource<T> extends AbstractActiveSource<T> {
 
@@ -50,6 +53,19 @@ public class ExecutorServiceActiveSource<T> extends AbstractActiveSource<T> {
 		catch (InterruptedException ex) {
 			logger.info("Interrupted while waiting for receiver task to stop");
 		}
+		finally {
+			this.executorService.shutdown();
+		}
+	}
+
+	@Override
+	protected void stopUnstarted() {
+		try {
+			this.executorService.shutdown();
+		}
+		finally {
+			super.stopUnstarted();
+		}
 	}
 
 
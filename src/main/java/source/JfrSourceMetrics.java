@@ -0,0 +1,129 @@
+package source;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * {@link SourceMetrics} that records metrics as custom JFR events, in the
+ * "Source" category. Events are created and committed only while enabled in
+ * a recording, so this costs next to nothing otherwise. Events identify the
+ * Source by type and identity hash code, rather than by its
+ * {@code toString()}, to avoid building a String for each event.
+ */
+public class JfrSourceMetrics implements SourceMetrics {
+
+	public static final JfrSourceMetrics INSTANCE = new JfrSourceMetrics();
+
+
+	@Override
+	public void itemsQueued(Source<?> source, int count, long blockedNanos, int queueSize, int queueHighWaterMark) {
+		ItemsQueuedEvent event = new ItemsQueuedEvent();
+		if (event.isEnabled()) {
+			event.sourceType = source.getClass().getName();
+			event.sourceId = System.identityHashCode(source);
+			event.count = count;
+			event.blockedTime = blockedNanos;
+			event.queueSize = queueSize;
+			event.queueHighWaterMark = queueHighWaterMark;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void consumerWaited(Source<?> source, long waitNanos, boolean received) {
+		ConsumerWaitedEvent event = new ConsumerWaitedEvent();
+		if (event.isEnabled()) {
+			event.sourceType = source.getClass().getName();
+			event.sourceId = System.identityHashCode(source);
+			event.waitTime = waitNanos;
+			event.received = received;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void itemRead(Source<?> source, int byteCount, long parseNanos, long convertNanos) {
+		ItemReadEvent event = new ItemReadEvent();
+		if (event.isEnabled()) {
+			event.sourceType = source.getClass().getName();
+			event.sourceId = System.identityHashCode(source);
+			event.byteCount = byteCount;
+			event.parseTime = parseNanos;
+			event.convertTime = convertNanos;
+			event.commit();
+		}
+	}
+
+
+	@Category("Source")
+	@StackTrace(false)
+	abstract static class SourceEvent extends Event {
+
+		@Label("Source Type")
+		String sourceType;
+
+		@Label("Source Id")
+		@Description("Identity hash code of the Source")
+		int sourceId;
+	}
+
+
+	@Name("source.ItemsQueued")
+	@Label("Items Queued")
+	@Description("Items put in the prefetch queue by the receiver task of an ActiveSource")
+	static final class ItemsQueuedEvent extends SourceEvent {
+
+		@Label("Count")
+		int count;
+
+		@Label("Blocked Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long blockedTime;
+
+		@Label("Queue Size")
+		int queueSize;
+
+		@Label("Queue High-Water Mark")
+		int queueHighWaterMark;
+	}
+
+
+	@Name("source.ConsumerWaited")
+	@Label("Consumer Waited")
+	@Description("Consumer of an ActiveSource waited for items in the prefetch queue")
+	static final class ConsumerWaitedEvent extends SourceEvent {
+
+		@Label("Wait Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long waitTime;
+
+		@Label("Received")
+		boolean received;
+	}
+
+
+	@Name("source.ItemRead")
+	@Label("Item Read")
+	@Description("Item read and parsed from a stream by a Source")
+	static final class ItemReadEvent extends SourceEvent {
+
+		@Label("Bytes")
+		@DataAmount
+		int byteCount;
+
+		@Label("Parse Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long parseTime;
+
+		@Label("Convert Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long convertTime;
+	}
+
+}
@@ -0,0 +1,437 @@
+package source;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.StructuredTaskScope.Subtask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * ActiveSource that merges items from many delegate Sources. It uses
+ * structured concurrency to run one receiver task per Source in a single
+ * {@link StructuredTaskScope}, and all receiver tasks put items in one shared
+ * bounded queue. Each item is wrapped as a {@link SourceItem} that indicates
+ * the Source it came from.
+ *
+ * <p>With {@link Fairness#FAIR}, receiver tasks blocked on a full queue are
+ * let in in FIFO order, and each Source is limited to an equal share of the
+ * queue capacity, so that a high-rate Source cannot crowd out the others.
+ *
+ * <p>The merged Source completes when all delegate Sources complete. How the
+ * failure of one delegate Source is handled depends on the {@link ErrorPolicy}.
+ *
+ * <p>Unlike sources based on {@link AbstractPrefetchingSource}, this always
+ * uses an {@link ArrayBlockingQueue}, as receiver tasks of many Sources put
+ * items in it, and the per-Source quotas rely on its fair ordering. Therefore,
+ * a {@link PrefetchQueue}, {@link OverflowPolicy}, {@link WaitStrategy},
+ * {@link PrefetchBudget}, and {@link SourceMetrics} cannot be configured: the
+ * queue always blocks receiver tasks when full, and consumers always park.
+ * To apply those per Source, wrap each delegate Source in an ActiveSource
+ * before merging, e.g. one from an {@link ActiveSourceGroup}.
+ */
+@SuppressWarnings("preview")
+public class MergedActiveSource<T> implements ActiveSource<MergedActiveSource.SourceItem<T>> {
+
+	private static final Logger logger = LogManager.getLogger(MergedActiveSource.class);
+
+	private static final Object COMPLETE = new Object();
+
+
+	private final List<Source<T>> sources;
+
+	private final ErrorPolicy errorPolicy;
+
+	private final BlockingQueue<Object> queue;
+
+	private final Semaphore @Nullable [] quotas;
+
+	private final StructuredTaskScope<Void, Void> scope;
+
+	private final AtomicInteger activeReceivers;
+
+	private final AtomicReference<@Nullable Completion> completion = new AtomicReference<>();
+
+	private final Map<Source<T>, Throwable> failures = new ConcurrentHashMap<>();
+
+	private final List<Object> drained = new ArrayList<>(); // accessed by consumer only
+
+	private @Nullable SourceItem<T> receivedItem;
+
+	private boolean started;
+
+	private volatile boolean stopping;
+
+	private volatile boolean closed;
+
+
+	private MergedActiveSource(
+			List<? extends Source<T>> sources, int capacity, Fairness fairness, ErrorPolicy errorPolicy) {
+
+		Assert.notEmpty(sources, "At least one Source is required");
+		Assert.isTrue(capacity > 0, "Capacity must be greater than 0");
+		this.sources = List.copyOf(sources);
+		this.errorPolicy = errorPolicy;
+		this.queue = new ArrayBlockingQueue<>(capacity, fairness == Fairness.FAIR);
+		this.quotas = (fairness == Fairness.FAIR ? initQuotas(this.sources.size(), capacity) : null);
+		this.activeReceivers = new AtomicInteger(this.sources.size());
+		this.scope = StructuredTaskScope.open(new MergeJoiner(),
+				config -> config.withThreadFactory(Thread.ofVirtual().name("merged-source-", 0).factory()));
+	}
+
+	private static Semaphore[] initQuotas(int sourceCount, int capacity) {
+		Semaphore[] quotas = new Semaphore[sourceCount];
+		for (int i = 0; i < sourceCount; i++) {
+			quotas[i] = new Semaphore(Math.max(1, capacity / sourceCount));
+		}
+		return quotas;
+	}
+
+
+	/**
+	 * Return the failures of delegate Sources that were isolated according to
+	 * {@link ErrorPolicy#ISOLATE}.
+	 */
+	public Map<Source<T>, Throwable> getFailures() {
+		return this.failures;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	@Override
+	public boolean receiveNext() throws IOException, InterruptedException {
+		if (this.closed) {
+			return returnCompletion();
+		}
+		startIfNecessary();
+		try {
+			Object item = this.queue.take();
+			setReceivedItem(item);
+		}
+		catch (InterruptedException ex) {
+			close();
+			throw ex;
+		}
+		closeAfterCompletion();
+		return (this.receivedItem != null);
+	}
+
+	@Override
+	public boolean tryReceiveNext(Duration timeout) throws IOException, InterruptedException {
+		if (this.closed) {
+			return returnCompletion();
+		}
+		startIfNecessary();
+		try {
+			Object item = this.queue.poll(TimeUnit.NANOSECONDS.convert(timeout), TimeUnit.NANOSECONDS);
+			setReceivedItem(item);
+		}
+		catch (InterruptedException ex) {
+			close();
+			throw ex;
+		}
+		closeAfterCompletion();
+		return (this.receivedItem != null);
+	}
+
+	@Override
+	public boolean tryReceiveNext() throws IOException {
+		if (this.closed) {
+			return returnCompletion();
+		}
+		startIfNecessary();
+		Object item = this.queue.poll();
+		setReceivedItem(item);
+		closeAfterCompletion();
+		return (this.receivedItem != null);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public int receiveBatch(Collection<? super SourceItem<T>> items, int maxItems, Duration timeout)
+			throws IOException, InterruptedException {
+
+		Assert.isTrue(maxItems > 0, "maxItems must be greater than 0");
+		if (this.closed) {
+			returnCompletion();
+			return 0;
+		}
+		startIfNecessary();
+		try {
+			Object item = this.queue.poll(TimeUnit.NANOSECONDS.convert(timeout), TimeUnit.NANOSECONDS);
+			if (item == null) {
+				return 0;
+			}
+			this.drained.add(item);
+			this.queue.drainTo(this.drained, maxItems - 1);
+			int count = 0;
+			for (Object drainedItem : this.drained) {
+				if (drainedItem == COMPLETE) {
+					if (count == 0) {
+						setReceivedItem(drainedItem);
+					}
+					break;
+				}
+				items.add(releaseQuota((SourceItem<T>) drainedItem));
+				count++;
+			}
+			closeAfterCompletion();
+			return count;
+		}
+		catch (InterruptedException ex) {
+			close();
+			throw ex;
+		}
+		finally {
+			this.drained.clear();
+		}
+	}
+
+	private boolean returnCompletion() throws IOException {
+		Completion c = this.completion.get();
+		if (c != null) {
+			c.throwIfCompletedExceptionally();
+		}
+		return false;
+	}
+
+	private void startIfNecessary() {
+		if (!this.started) {
+			this.started = true;
+			for (int i = 0; i < this.sources.size(); i++) {
+				int index = i;
+				this.scope.fork(() -> receive(index));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void setReceivedItem(@Nullable Object item) throws IOException {
+		if (item == COMPLETE) {
+			Completion c = this.completion.get();
+			if (c == null) {
+				throw new IllegalStateException("Completion not set");
+			}
+			this.closed = true;
+			c.throwIfCompletedExceptionally();
+		}
+		else if (item != null) {
+			this.receivedItem = releaseQuota((SourceItem<T>) item);
+		}
+	}
+
+	private SourceItem<T> releaseQuota(SourceItem<T> item) {
+		if (this.quotas != null) {
+			this.quotas[item.sourceIndex()].release();
+		}
+		return item;
+	}
+
+	private void closeAfterCompletion() {
+		if (this.completion.get() != null && this.queue.isEmpty()) {
+			this.closed = true;
+		}
+	}
+
+	@Override
+	public SourceItem<T> next() {
+		SourceItem<T> item = this.receivedItem;
+		if (item == null) {
+			throw new IllegalStateException("No received event");
+		}
+		this.receivedItem = null;
+		return item;
+	}
+
+	@Override
+	public boolean canReceiveWithoutBlocking() {
+		return !this.queue.isEmpty();
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+		try {
+			if (this.started) {
+				// Cancel the scope, see MergeJoiner
+				this.stopping = true;
+				this.scope.fork(() -> {});
+				this.scope.join();
+			}
+		}
+		catch (InterruptedException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug(ex.getMessage(), ex);
+			}
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			this.scope.close();
+			this.queue.clear(); // discarded items
+		}
+	}
+
+
+	/**
+	 * Receive items from one delegate Source, and put them in the shared queue.
+	 */
+	private Void receive(int index) throws Exception {
+		Source<T> source = this.sources.get(index);
+		Semaphore quota = (this.quotas != null ? this.quotas[index] : null);
+		try (source) {
+			while (source.receiveNext()) {
+				SourceItem<T> item = new SourceItem<>(index, source, source.next());
+				if (quota != null) {
+					quota.acquire();
+				}
+				this.queue.put(item);
+			}
+		}
+		catch (InterruptedException ex) {
+			throw ex;
+		}
+		catch (Exception ex) {
+			if (this.stopping) {
+				throw ex;
+			}
+			if (this.errorPolicy == ErrorPolicy.CANCEL_GROUP) {
+				this.completion.compareAndSet(null, new Completion(ex));
+				throw ex;
+			}
+			logger.warn("Isolating failed Source " + source, ex);
+			this.failures.put(source, ex);
+		}
+		finally {
+			if (this.activeReceivers.decrementAndGet() == 0) {
+				complete();
+			}
+		}
+		return null;
+	}
+
+	private void complete() throws InterruptedException {
+		this.completion.compareAndSet(null, new Completion(null));
+		// Clear the interrupt from a CANCEL_GROUP cancellation, the consumer still needs COMPLETE
+		Thread.interrupted();
+		while (!this.closed) {
+			if (this.queue.offer(COMPLETE, 100, TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return "MergedActiveSource for " + this.sources.size() + " sources";
+	}
+
+
+	/**
+	 * Merge the given Sources with {@link Fairness#FAIR} and
+	 * {@link ErrorPolicy#ISOLATE}, and a queue capacity of 128 slots.
+	 */
+	public static <T> MergedActiveSource<T> from(List<? extends Source<T>> sources) {
+		return from(sources, 128, Fairness.FAIR, ErrorPolicy.ISOLATE);
+	}
+
+	/**
+	 * Merge the given Sources.
+	 * @param sources the Sources to merge
+	 * @param capacity the capacity of the shared queue
+	 * @param fairness how to share the queue across Sources
+	 * @param errorPolicy how to handle the failure of a Source
+	 */
+	public static <T> MergedActiveSource<T> from(
+			List<? extends Source<T>> sources, int capacity, Fairness fairness, ErrorPolicy errorPolicy) {
+
+		return new MergedActiveSource<>(sources, capacity, fairness, errorPolicy);
+	}
+
+
+	/**
+	 * An item from one of the merged Sources.
+	 * @param sourceIndex the index of the Source in the list of merged Sources
+	 * @param source the Source the item came from
+	 * @param item the received item
+	 * @param <T> the types of items received through the Source
+	 */
+	public record SourceItem<T>(int sourceIndex, Source<T> source, T item) {
+	}
+
+
+	/**
+	 * How receiver tasks share the queue.
+	 */
+	public enum Fairness {
+
+		/**
+		 * Receiver tasks compete for space in the queue. A high-rate Source may
+		 * take up most of the queue.
+		 */
+		NONE,
+
+		/**
+		 * Receiver tasks waiting for space are let in in FIFO order, and each
+		 * Source may have at most an equal share of the queue capacity.
+		 */
+		FAIR
+	}
+
+
+	/**
+	 * How to handle the failure of one of the merged Sources.
+	 */
+	public enum ErrorPolicy {
+
+		/**
+		 * Record the failure, see {@link #getFailures()}, and continue to
+		 * receive from the other Sources.
+		 */
+		ISOLATE,
+
+		/**
+		 * Cancel the other receiver tasks, and complete the merged Source with
+		 * the exception, after the items received before it are consumed.
+		 */
+		CANCEL_GROUP
+	}
+
+
+	/**
+	 * Joiner that cancels the scope when the merged Source is closed, or when
+	 * a receiver task fails with {@link ErrorPolicy#CANCEL_GROUP}.
+	 */
+	private final class MergeJoiner implements StructuredTaskScope.Joiner<Void, Void> {
+
+		@Override
+		public boolean onComplete(Subtask<? extends Void> subtask) {
+			return (stopping ||
+					(subtask.state() == Subtask.State.FAILED && errorPolicy == ErrorPolicy.CANCEL_GROUP));
+		}
+
+		@Override
+		public @Nullable Void result() {
+			return null;
+		}
+	}
+
+}
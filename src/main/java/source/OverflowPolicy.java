@@ -0,0 +1,198 @@
+package source;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Policy for how the receiver task of an {@link AbstractActiveSource} puts
+ * items in the {@link PrefetchQueue} when consumers fall behind and the queue
+ * is full. Use one of the static factory methods to create an instance, and
+ * do not share it across sources, so its counters reflect a single source.
+ *
+ * @param <T> the types of items received through the Source
+ */
+public abstract class OverflowPolicy<T> {
+
+	private final LongAdder droppedCount = new LongAdder();
+
+	private final LongAdder conflatedCount = new LongAdder();
+
+
+	private OverflowPolicy() {
+	}
+
+
+	/**
+	 * Return the number of items dropped.
+	 */
+	public long getDroppedCount() {
+		return this.droppedCount.sum();
+	}
+
+	/**
+	 * Return the number of items that replaced a queued item with the same key.
+	 */
+	public long getConflatedCount() {
+		return this.conflatedCount.sum();
+	}
+
+	final void itemDropped() {
+		this.droppedCount.increment();
+	}
+
+	final void itemConflated() {
+		this.conflatedCount.increment();
+	}
+
+	/**
+	 * Put the given items in the queue, or handle them according to the policy.
+	 */
+	abstract void publish(PrefetchQueue queue, List<?> items) throws InterruptedException;
+
+	/**
+	 * Whether the policy requires a queue that
+	 * {@link PrefetchQueue#isReplaceSupported() supports} in-place replacement.
+	 */
+	boolean requiresReplace() {
+		return false;
+	}
+
+
+	/**
+	 * Wait for space in the queue. This stalls the receiver task, and in turn
+	 * reading from the delegate Source, until consumers catch up.
+	 */
+	public static <T> OverflowPolicy<T> block() {
+		return new BlockPolicy<>();
+	}
+
+	/**
+	 * Remove the oldest queued item to make space for the newest.
+	 */
+	public static <T> OverflowPolicy<T> dropOldest() {
+		return new DropOldestPolicy<>();
+	}
+
+	/**
+	 * Drop the newest item if there is no space for it.
+	 */
+	public static <T> OverflowPolicy<T> dropNewest() {
+		return new DropNewestPolicy<>();
+	}
+
+	/**
+	 * Replace, in place, a queued item with the same key as the newest item,
+	 * so that at most one item per key is queued, e.g. keyed by
+	 * {@code ServerSentEvent::event}. Items with a {@code null} key are never
+	 * conflated. If there is no queued item with the same key, and the queue
+	 * is full, then wait for space.
+	 * <p>This requires a {@link PrefetchQueue} that supports in-place
+	 * {@link PrefetchQueue#replace replacement}, such as the default
+	 * {@link RingBufferPrefetchQueue}. Each item is matched against the queued
+	 * items, so this is intended for queues with a modest capacity.
+	 * @param keyExtractor function to extract the key to compare items by
+	 */
+	public static <T> OverflowPolicy<T> conflate(Function<? super T, ?> keyExtractor) {
+		return new ConflatePolicy<>(keyExtractor);
+	}
+
+
+	private static final class BlockPolicy<T> extends OverflowPolicy<T> {
+
+		@Override
+		void publish(PrefetchQueue queue, List<?> items) throws InterruptedException {
+			queue.putAll(items);
+		}
+
+		@Override
+		public String toString() {
+			return "OverflowPolicy[block]";
+		}
+	}
+
+
+	private static final class DropOldestPolicy<T> extends OverflowPolicy<T> {
+
+		@Override
+		void publish(PrefetchQueue queue, List<?> items) {
+			for (Object item : items) {
+				while (!queue.offer(item)) {
+					if (queue.evict() != null) {
+						itemDropped();
+					}
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "OverflowPolicy[dropOldest, dropped=" + getDroppedCount() + "]";
+		}
+	}
+
+
+	private static final class DropNewestPolicy<T> extends OverflowPolicy<T> {
+
+		@Override
+		void publish(PrefetchQueue queue, List<?> items) {
+			for (Object item : items) {
+				if (!queue.offer(item)) {
+					itemDropped();
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "OverflowPolicy[dropNewest, dropped=" + getDroppedCount() + "]";
+		}
+	}
+
+
+	private static final class ConflatePolicy<T> extends OverflowPolicy<T> {
+
+		private final Function<? super T, ?> keyExtractor;
+
+		ConflatePolicy(Function<? super T, ?> keyExtractor) {
+			Assert.notNull(keyExtractor, "Key extractor is required");
+			this.keyExtractor = keyExtractor;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		void publish(PrefetchQueue queue, List<?> items) throws InterruptedException {
+			for (Object item : items) {
+				Object key = this.keyExtractor.apply((T) item);
+				if (key != null && queue.replace(queued -> matches(key, queued), item)) {
+					itemConflated();
+				}
+				else {
+					queue.put(item);
+				}
+			}
+		}
+
+		@Override
+		boolean requiresReplace() {
+			return true;
+		}
+
+		@SuppressWarnings("unchecked")
+		private boolean matches(Object key, Object queued) {
+			@Nullable Object queuedKey = this.keyExtractor.apply((T) queued);
+			return Objects.equals(key, queuedKey);
+		}
+
+		@Override
+		public String toString() {
+			return "OverflowPolicy[conflate, conflated=" + getConflatedCount() + "]";
+		}
+	}
+
+}
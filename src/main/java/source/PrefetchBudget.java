@@ -0,0 +1,97 @@
+package source;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * Byte budget for items held in the prefetch queues of many ActiveSources.
+ * Each {@link AdaptivePrefetchQueue} charges the budget for the items it
+ * holds, by their estimated size, and admits more items only while the
+ * budget has room, but always at least one, so that every Source makes
+ * progress. The limit is therefore soft, and may be exceeded by about one
+ * item per Source.
+ *
+ * <p>ActiveSources opt in via
+ * {@link AbstractPrefetchingSource#setPrefetchBudget(PrefetchBudget)},
+ * typically with the process-wide {@link #shared()} budget.
+ */
+public final class PrefetchBudget {
+
+	private static final PrefetchBudget shared = new PrefetchBudget(
+			Long.getLong("source.prefetch-budget", Runtime.getRuntime().maxMemory() / 4),
+			Integer.getInteger("source.prefetch-item-size", 1024));
+
+
+	private final long maxBytes;
+
+	private final int defaultItemSize;
+
+	private final LongAdder usedBytes = new LongAdder();
+
+
+	/**
+	 * Create a budget.
+	 * @param maxBytes the number of bytes that queued items may take up
+	 * @param defaultItemSize the estimated size of an item, for Sources
+	 * without an {@link AbstractPrefetchingSource#setItemSizeEstimator item
+	 * size estimator}
+	 */
+	public PrefetchBudget(long maxBytes, int defaultItemSize) {
+		Assert.isTrue(maxBytes > 0, "maxBytes must be greater than 0");
+		Assert.isTrue(defaultItemSize > 0, "defaultItemSize must be greater than 0");
+		this.maxBytes = maxBytes;
+		this.defaultItemSize = defaultItemSize;
+	}
+
+
+	/**
+	 * Return the number of bytes that queued items may take up.
+	 */
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	/**
+	 * Return the estimated size of an item, when there is no better estimate.
+	 */
+	public int getDefaultItemSize() {
+		return this.defaultItemSize;
+	}
+
+	/**
+	 * Return the estimated number of bytes taken up by queued items.
+	 */
+	public long getUsedBytes() {
+		return this.usedBytes.sum();
+	}
+
+	/**
+	 * Return the number of bytes left, or 0 if the budget is used up.
+	 */
+	public long getAvailableBytes() {
+		return Math.max(0, this.maxBytes - this.usedBytes.sum());
+	}
+
+	void charge(long bytes) {
+		this.usedBytes.add(bytes);
+	}
+
+
+	@Override
+	public String toString() {
+		return "PrefetchBudget[used=" + getUsedBytes() + ", max=" + this.maxBytes + "]";
+	}
+
+
+	/**
+	 * Return a process-wide budget for ActiveSources to share. Its size is
+	 * taken from the {@code source.prefetch-budget} system property, in
+	 * bytes, or is a quarter of the maximum heap size, and the default item
+	 * size from {@code source.prefetch-item-size}, or 1024 bytes.
+	 */
+	public static PrefetchBudget shared() {
+		return shared;
+	}
+
+}
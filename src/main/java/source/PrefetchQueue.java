@@ -0,0 +1,112 @@
+package source;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Strategy for the bounded queue through which an {@link AbstractActiveSource}
+ * hands items from its receiver task to consumers. The receiver task is the
+ * only producer, and there is at most one consumer at a time, which allows
+ * implementations to rely on single-producer, single-consumer access.
+ *
+ * @see RingBufferPrefetchQueue
+ * @see BlockingPrefetchQueue
+ */
+public interface PrefetchQueue {
+
+	/**
+	 * Insert the item if there is space, without blocking.
+	 * @return {@code true} if the item was inserted
+	 */
+	boolean offer(Object item);
+
+	/**
+	 * Insert the item, waiting for space if necessary.
+	 */
+	void put(Object item) throws InterruptedException;
+
+	/**
+	 * Insert all items, in order, waiting for space as necessary. Implementations
+	 * should publish as many items as there is space for at once.
+	 */
+	void putAll(List<?> items) throws InterruptedException;
+
+	/**
+	 * Remove the oldest item from the producer side, e.g. to make space for a
+	 * newer item under an {@link OverflowPolicy#dropOldest() drop-oldest}
+	 * policy. The consumer may remove the same item concurrently, in which
+	 * case only one side gets it.
+	 * @return the removed item, or {@code null} if the queue is empty
+	 */
+	@Nullable Object evict();
+
+	/**
+	 * Replace, in place, the most recently inserted item that matches, unless
+	 * the consumer removes it first. Used by a
+	 * {@link OverflowPolicy#conflate(java.util.function.Function) conflating}
+	 * policy.
+	 * @param matcher to select the item to replace
+	 * @param item the replacement
+	 * @return {@code true} if an item was replaced
+	 * @throws UnsupportedOperationException if not supported by the queue
+	 * @see #isReplaceSupported()
+	 */
+	boolean replace(Predicate<Object> matcher, Object item);
+
+	/**
+	 * Whether the queue supports {@link #replace in-place replacement}, as
+	 * required by a conflating {@link OverflowPolicy}.
+	 * <p>By default, this returns {@code false}.
+	 */
+	default boolean isReplaceSupported() {
+		return false;
+	}
+
+	/**
+	 * Remove and return the next item, or {@code null} if the queue is empty.
+	 */
+	@Nullable Object poll();
+
+	/**
+	 * Remove and return the next item, waiting up to the given time for one.
+	 * @return the item, or {@code null} if the time elapsed
+	 */
+	@Nullable Object poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Remove and return the next item, waiting for one if necessary.
+	 */
+	Object take() throws InterruptedException;
+
+	/**
+	 * Remove up to the given number of available items, without blocking,
+	 * and add them to the given collection.
+	 * @return the number of items transferred
+	 */
+	int drainTo(Collection<Object> target, int maxItems);
+
+	/**
+	 * Whether the queue is empty.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Return the number of items in the queue.
+	 */
+	int size();
+
+	/**
+	 * Return the maximum number of items the queue can hold.
+	 */
+	int capacity();
+
+	/**
+	 * Remove all items from the queue.
+	 */
+	void clear();
+
+}
@@ -0,0 +1,178 @@
+package source;
+
+import java.util.concurrent.Flow;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Adapter from a {@link Flow.Publisher} to an {@link ActiveSource}. It
+ * subscribes on the first call to receive, and requests no more items than
+ * the prefetch limit, so the prefetch queue is sized to the limit, and never
+ * holds more than that. As consumers take items, demand is replenished in
+ * batches, once three quarters of the limit has been consumed. Since demand
+ * already bounds the queue, a {@link PrefetchBudget} is not supported.
+ *
+ * <p>Closing the Source cancels the subscription. {@code onComplete} and
+ * {@code onError} complete the Source, after the items received before are
+ * consumed, as for other ActiveSources.
+ *
+ * @param <T> the types of items received through the Source
+ */
+public class PublisherActiveSource<T> extends AbstractPrefetchingSource<T> {
+
+	private final Flow.Publisher<? extends T> publisher;
+
+	private int prefetch;
+
+	private int replenishThreshold;
+
+	private int consumedSinceRequest; // accessed by consumer only
+
+	private volatile Flow.@Nullable Subscription subscription;
+
+	private volatile boolean stopped;
+
+
+	private PublisherActiveSource(Flow.Publisher<? extends T> publisher, int prefetch) {
+		Assert.notNull(publisher, "Publisher is required");
+		this.publisher = publisher;
+		setPrefetch(prefetch);
+	}
+
+
+	/**
+	 * Set the maximum number of items to request ahead of consumers, and
+	 * replace the prefetch queue with one of that capacity.
+	 * This must be set before the first call to receive.
+	 * <p>By default, this is 128.
+	 */
+	public void setPrefetch(int prefetch) {
+		Assert.isTrue(prefetch > 0, "Prefetch must be greater than 0");
+		setPrefetchQueue(new RingBufferPrefetchQueue(prefetch));
+		this.prefetch = prefetch;
+		this.replenishThreshold = Math.max(1, prefetch - (prefetch >> 2));
+	}
+
+	/**
+	 * Return the configured {@link #setPrefetch(int) prefetch} limit.
+	 */
+	public int getPrefetch() {
+		return this.prefetch;
+	}
+
+	/**
+	 * Not supported, as an item refused for lack of budget, after it was
+	 * requested, would fail the Source.
+	 */
+	@Override
+	public void setPrefetchBudget(@Nullable PrefetchBudget prefetchBudget) {
+		Assert.isNull(prefetchBudget, "PrefetchBudget is not supported, demand bounds the queue");
+	}
+
+
+	@Override
+	protected void startProducing() {
+		Assert.state(this.prefetch <= getPrefetchQueue().capacity(), "Prefetch exceeds PrefetchQueue capacity");
+		this.publisher.subscribe(new PrefetchingSubscriber());
+	}
+
+	@Override
+	protected void stopProducing() {
+		this.stopped = true;
+		Flow.Subscription subscription = this.subscription;
+		if (subscription != null) {
+			subscription.cancel();
+		}
+	}
+
+	@Override
+	protected void itemsConsumed(int count) {
+		this.consumedSinceRequest += count;
+		if (this.consumedSinceRequest >= this.replenishThreshold) {
+			Flow.Subscription subscription = this.subscription;
+			if (subscription != null) {
+				subscription.request(this.consumedSinceRequest);
+			}
+			this.consumedSinceRequest = 0;
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return "PublisherActiveSource for " + this.publisher;
+	}
+
+
+	/**
+	 * Adapt the given Publisher to an ActiveSource with a prefetch limit of 128.
+	 */
+	public static <T> PublisherActiveSource<T> from(Flow.Publisher<? extends T> publisher) {
+		return from(publisher, 128);
+	}
+
+	/**
+	 * Adapt the given Publisher to an ActiveSource with the given prefetch limit.
+	 */
+	public static <T> PublisherActiveSource<T> from(Flow.Publisher<? extends T> publisher, int prefetch) {
+		return new PublisherActiveSource<>(publisher, prefetch);
+	}
+
+
+	/**
+	 * Subscriber that puts items in the prefetch queue. Signals are serialized
+	 * by the Publisher, which makes it a single producer.
+	 */
+	private final class PrefetchingSubscriber implements Flow.Subscriber<T> {
+
+		private boolean done;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			if (PublisherActiveSource.this.subscription != null) {
+				subscription.cancel();
+				return;
+			}
+			PublisherActiveSource.this.subscription = subscription;
+			if (stopped) {
+				subscription.cancel();
+				return;
+			}
+			subscription.request(prefetch);
+		}
+
+		@Override
+		public void onNext(T item) {
+			if (this.done) {
+				return;
+			}
+			if (!tryPublish(item)) {
+				this.done = true;
+				Flow.Subscription subscription = PublisherActiveSource.this.subscription;
+				if (subscription != null) {
+					subscription.cancel();
+				}
+				complete(new IllegalStateException("Publisher sent more items than requested"));
+			}
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			if (!this.done) {
+				this.done = true;
+				complete(ex);
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			if (!this.done) {
+				this.done = true;
+				complete(null);
+			}
+		}
+	}
+
+}
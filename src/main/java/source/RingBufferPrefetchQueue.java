@@ -0,0 +1,324 @@
+package source;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Bounded, lock-free {@link PrefetchQueue} for a single producer and a single
+ * consumer, backed by a preallocated array. Unlike a
+ * {@link java.util.concurrent.LinkedBlockingQueue}, it does not allocate per
+ * item, nor does it acquire a lock to insert or remove.
+ *
+ * <p>Each slot has a sequence number that says whether it holds the item for
+ * a given index, or is free for the item at the index one lap later. The
+ * producer writes a slot only once its sequence says it is free, and then
+ * advances the {@code tail} index. Items are removed by first claiming the
+ * {@code head} index with a compare-and-set, and only then taking the item
+ * and freeing the slot. This lets the producer {@link #evict() evict} the
+ * oldest item, or {@link #replace replace} an item in place, without a lock,
+ * while it is normally only the consumer that removes items, and a side that
+ * loses the race for the head never touches a slot the producer has already
+ * reused. A side that has to wait parks, and registers itself so the other
+ * side can unpark it after it moves its index.
+ */
+public class RingBufferPrefetchQueue implements PrefetchQueue {
+
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private static final VarHandle HEAD;
+
+	static {
+		try {
+			HEAD = MethodHandles.lookup().findVarHandle(RingBufferPrefetchQueue.class, "head", long.class);
+		}
+		catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+
+
+	private final @Nullable Object[] buffer;
+
+	private final long[] sequences;
+
+	private final int mask;
+
+	private volatile long head;
+
+	private volatile long tail;
+
+	private volatile @Nullable Thread waitingProducer;
+
+	private volatile @Nullable Thread waitingConsumer;
+
+
+	/**
+	 * Create an instance with the given capacity, rounded up to a power of 2.
+	 */
+	public RingBufferPrefetchQueue(int capacity) {
+		Assert.isTrue(capacity > 0, "Capacity must be greater than 0");
+		int size = (capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+		this.buffer = new Object[size];
+		this.sequences = new long[size];
+		for (int i = 0; i < size; i++) {
+			this.sequences[i] = i;
+		}
+		this.mask = size - 1;
+	}
+
+
+	// Producer side
+
+	@Override
+	public boolean offer(Object item) {
+		Assert.notNull(item, "Item is required");
+		long t = this.tail;
+		if (!isFree(t)) {
+			return false;
+		}
+		write(t, item);
+		this.tail = t + 1;
+		signal(this.waitingConsumer);
+		return true;
+	}
+
+	@Override
+	public void put(Object item) throws InterruptedException {
+		while (!offer(item)) {
+			awaitNotFull();
+		}
+	}
+
+	@Override
+	public void putAll(List<?> items) throws InterruptedException {
+		int index = 0;
+		while (index < items.size()) {
+			long t = this.tail;
+			int count = 0;
+			while (index + count < items.size() && isFree(t + count)) {
+				Object item = items.get(index + count);
+				Assert.notNull(item, "Item is required");
+				write(t + count, item);
+				count++;
+			}
+			if (count == 0) {
+				awaitNotFull();
+				continue;
+			}
+			this.tail = t + count;
+			signal(this.waitingConsumer);
+			index += count;
+		}
+	}
+
+	/**
+	 * Whether the slot for the given tail index is free, i.e. the item one lap
+	 * earlier has been removed, and its slot released.
+	 */
+	private boolean isFree(long t) {
+		return ((long) SEQUENCE.getAcquire(this.sequences, (int) t & this.mask) == t);
+	}
+
+	private void write(long t, Object item) {
+		int index = (int) t & this.mask;
+		this.buffer[index] = item;
+		SEQUENCE.setRelease(this.sequences, index, t + 1);
+	}
+
+	@Override
+	public @Nullable Object evict() {
+		return removeHead();
+	}
+
+	@Override
+	public boolean replace(Predicate<Object> matcher, Object item) {
+		Assert.notNull(item, "Item is required");
+		long h = this.head;
+		for (long i = this.tail - 1; i >= h; i--) {
+			int index = (int) i & this.mask;
+			Object current = SLOT.getVolatile(this.buffer, index);
+			if (current != null && matcher.test(current)) {
+				// Fails if the consumer has just taken it
+				return SLOT.compareAndSet(this.buffer, index, current, item);
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isReplaceSupported() {
+		return true;
+	}
+
+	private void awaitNotFull() throws InterruptedException {
+		this.waitingProducer = Thread.currentThread();
+		try {
+			while (!isFree(this.tail)) {
+				LockSupport.park(this);
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		}
+		finally {
+			this.waitingProducer = null;
+		}
+	}
+
+
+	// Consumer side
+
+	@Override
+	public @Nullable Object poll() {
+		return removeHead();
+	}
+
+	/**
+	 * Remove the item at the head, competing with the other side if necessary.
+	 * The head index is claimed first, so the item is taken only by the side
+	 * that claimed it, and its slot is released for reuse only after that.
+	 */
+	private @Nullable Object removeHead() {
+		while (true) {
+			long h = this.head;
+			int index = (int) h & this.mask;
+			long sequence = (long) SEQUENCE.getAcquire(this.sequences, index);
+			if (sequence == h + 1) {
+				if (HEAD.compareAndSet(this, h, h + 1)) {
+					// Not null, replace only swaps one item for another
+					Object item = SLOT.getAndSet(this.buffer, index, null);
+					// Volatile, so it is ordered before the read of waitingProducer
+					SEQUENCE.setVolatile(this.sequences, index, h + this.buffer.length);
+					signal(this.waitingProducer);
+					return item;
+				}
+			}
+			else if (sequence <= h && this.head == h) {
+				return null;
+			}
+			// Claimed by the other side, which has moved the head
+			Thread.onSpinWait();
+		}
+	}
+
+	@Override
+	public @Nullable Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+		Object item = poll();
+		if (item != null) {
+			return item;
+		}
+		// Count down rather than compare to a deadline, which overflows for Long.MAX_VALUE
+		long remaining = unit.toNanos(timeout);
+		long time = System.nanoTime();
+		while (true) {
+			if (remaining <= 0) {
+				return poll();
+			}
+			awaitNotEmpty(remaining);
+			item = poll();
+			if (item != null) {
+				return item;
+			}
+			long now = System.nanoTime();
+			remaining -= now - time;
+			time = now;
+		}
+	}
+
+	@Override
+	public Object take() throws InterruptedException {
+		while (true) {
+			Object item = poll();
+			if (item != null) {
+				return item;
+			}
+			awaitNotEmpty(0);
+		}
+	}
+
+	/**
+	 * Park until the queue is not empty, or the given time elapses.
+	 * @param nanos the time to wait, or 0 to wait indefinitely
+	 */
+	private void awaitNotEmpty(long nanos) throws InterruptedException {
+		this.waitingConsumer = Thread.currentThread();
+		try {
+			if (this.head >= this.tail) {
+				if (nanos > 0) {
+					LockSupport.parkNanos(this, nanos);
+				}
+				else {
+					LockSupport.park(this);
+				}
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		finally {
+			this.waitingConsumer = null;
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<Object> target, int maxItems) {
+		int count = 0;
+		while (count < maxItems) {
+			Object item = removeHead();
+			if (item == null) {
+				break;
+			}
+			target.add(item);
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void clear() {
+		while (poll() != null) {
+			// discard
+		}
+	}
+
+
+	@Override
+	public boolean isEmpty() {
+		return (this.head >= this.tail);
+	}
+
+	@Override
+	public int size() {
+		long h = this.head;
+		long t = this.tail;
+		return (int) Math.max(0, Math.min(t - h, this.buffer.length));
+	}
+
+	@Override
+	public int capacity() {
+		return this.buffer.length;
+	}
+
+	private static void signal(@Nullable Thread thread) {
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RingBufferPrefetchQueue[size=" + size() + ", capacity=" + capacity() + "]";
+	}
+
+}
@@ -1,6 +1,8 @@
 package source;
 
 import java.io.IOException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Contract to receive items from a Source.
@@ -14,7 +16,7 @@ public interface Source<T> extends AutoCloseable {
 	 * <li>For direct {@link Source} implementations, this triggers receiving,
 	 * and blocks until at least one item is received.
 	 * <li>For {@link ActiveSource} implementations with an active receiver task
-	 * this method waits until an item appears in the {@code BlockingQueue}.
+	 * this method waits until an item appears in the {@code PrefetchQueue}.
 	 * </ul>
 	 * A return value of {@code true} guarantees {@link #next()} will return an
 	 * item, while {@code false} means the Source will not return more items.
@@ -28,6 +30,27 @@ public interface Source<T> extends AutoCloseable {
 	 */
 	T next();
 
+	/**
+	 * Whether the next call to {@link #receiveNext()} is expected to complete
+	 * without blocking, e.g. because input is already buffered. This is only a
+	 * hint that {@link ActiveSource} receiver tasks use to accumulate items
+	 * that arrive back-to-back and hand them over as a batch.
+	 * <p>By default, this returns {@code false}.
+	 */
+	default boolean canReceiveWithoutBlocking() {
+		return false;
+	}
+
+	/**
+	 * Return a lazy, sequential {@link Stream} view of the remaining items,
+	 * received as the Stream is consumed, e.g. to use with
+	 * {@link SourceGatherers}. Closing the Stream closes the Source.
+	 * @see SourceSpliterator
+	 */
+	default Stream<T> stream() {
+		return StreamSupport.stream(new SourceSpliterator<>(this), false).onClose(this::close);
+	}
+
 	/**
 	 * Close the Source from the receiving side.
 	 */
@@ -0,0 +1,92 @@
+package source;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Gatherer;
+import java.util.stream.Gatherers;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link Gatherer} implementations to batch the items of a
+ * {@link Source#stream() Source stream}, e.g. for bulk writes downstream.
+ *
+ * <p>Gatherers are driven by items, so a time-based window ends when the
+ * first item after the window duration arrives, or when the stream ends, but
+ * not while the stream is idle. Combine time with a maximum size to also
+ * bound the size of windows. For windows that also end while an
+ * {@link ActiveSource} is idle, use
+ * {@link ActiveSource#streamWindows(int, Duration)} instead.
+ *
+ * @see Gatherers
+ */
+public abstract class SourceGatherers {
+
+	/**
+	 * Collect items in windows that span up to the given duration, starting
+	 * from the first item in the window. A window is emitted only with the
+	 * next item or at the end of the stream, see
+	 * {@link ActiveSource#streamWindows(int, Duration)} for one that is also
+	 * emitted while the Source is idle.
+	 */
+	public static <T> Gatherer<T, ?, List<T>> windowByTime(Duration duration) {
+		return windowBySizeOrTime(Integer.MAX_VALUE, duration);
+	}
+
+	/**
+	 * Collect items in windows of the given size, with the last window
+	 * possibly smaller. Same as {@link Gatherers#windowFixed(int)}.
+	 */
+	public static <T> Gatherer<T, ?, List<T>> windowBySize(int size) {
+		return Gatherers.windowFixed(size);
+	}
+
+	/**
+	 * Collect items in windows that end when they reach the given size, or
+	 * span the given duration, whichever comes first.
+	 */
+	public static <T> Gatherer<T, ?, List<T>> windowBySizeOrTime(int maxSize, Duration duration) {
+		Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+		Assert.isTrue(!duration.isNegative() && !duration.isZero(), "Duration must be positive");
+		long durationNanos = duration.toNanos();
+		return Gatherer.ofSequential(
+				Window<T>::new,
+				Gatherer.Integrator.ofGreedy((window, item, downstream) -> {
+					long now = System.nanoTime();
+					if (!window.items.isEmpty() && now - window.startTime >= durationNanos) {
+						if (!downstream.push(window.flush())) {
+							return false;
+						}
+					}
+					if (window.items.isEmpty()) {
+						window.startTime = now;
+					}
+					window.items.add(item);
+					return (window.items.size() < maxSize || downstream.push(window.flush()));
+				}),
+				(window, downstream) -> {
+					if (!window.items.isEmpty()) {
+						downstream.push(window.flush());
+					}
+				});
+	}
+
+
+	/**
+	 * Items of the current window, and the time of the first item.
+	 */
+	private static final class Window<T> {
+
+		List<T> items = new ArrayList<>();
+
+		long startTime;
+
+		List<T> flush() {
+			List<T> result = this.items;
+			this.items = new ArrayList<>();
+			return result;
+		}
+	}
+
+}
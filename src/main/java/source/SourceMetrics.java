@@ -0,0 +1,50 @@
+package source;
+
+/**
+ * Listener for metrics of a {@link Source}, e.g. to feed a metrics registry.
+ * Sources that support it have a {@code setMetrics} method, and when it is
+ * not set, they do not measure anything. Metrics are passed as primitive
+ * values, without allocation, and listeners are called on the receiving or
+ * the consuming thread, so they must be fast and thread-safe.
+ *
+ * <p>Rates such as items per second and bytes per second are derived by
+ * summing the counts passed to the listener over an interval.
+ * {@link JfrSourceMetrics} records the metrics as JFR events.
+ */
+public interface SourceMetrics {
+
+	/**
+	 * Called when the producer of an {@link AbstractPrefetchingSource}, e.g.
+	 * the receiver task of an {@link AbstractActiveSource}, has put items in
+	 * the prefetch queue.
+	 * @param source the ActiveSource
+	 * @param count the number of items
+	 * @param blockedNanos the time spent in putting the items, including the
+	 * time blocked on a full queue
+	 * @param queueSize the number of items in the queue after putting them
+	 * @param queueHighWaterMark the highest number of items in the queue so far
+	 */
+	default void itemsQueued(Source<?> source, int count, long blockedNanos, int queueSize, int queueHighWaterMark) {
+	}
+
+	/**
+	 * Called when a consumer of an {@link AbstractPrefetchingSource} has waited for
+	 * items in the prefetch queue.
+	 * @param source the ActiveSource
+	 * @param waitNanos the time spent waiting
+	 * @param received whether an item was received, or the wait timed out
+	 */
+	default void consumerWaited(Source<?> source, long waitNanos, boolean received) {
+	}
+
+	/**
+	 * Called when a Source that reads from a stream has read an item.
+	 * @param source the Source
+	 * @param byteCount the number of bytes read from the stream for the item
+	 * @param parseNanos the time spent parsing the item, excluding I/O
+	 * @param convertNanos the time spent converting the content of the item
+	 */
+	default void itemRead(Source<?> source, int byteCount, long parseNanos, long convertNanos) {
+	}
+
+}
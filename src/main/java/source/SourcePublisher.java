@@ -0,0 +1,170 @@
+package source;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Adapter from a {@link Source} to a {@link Flow.Publisher}, for a single
+ * subscriber. Items are received on a virtual thread, and only while the
+ * subscriber has outstanding demand, so for a plain Source, such as a
+ * {@code ServerSentEventSource}, {@code request(n)} is what drives receiving,
+ * and nothing is read ahead beyond it. An {@link ActiveSource} can also be
+ * adapted, but its receiver task prefetches independently of demand.
+ *
+ * <p>Cancelling the subscription closes the Source, and interrupts the thread
+ * if it is waiting to receive. The end of the Source
+ * is signalled with {@code onComplete}, and an exception from receiving with
+ * {@code onError}.
+ *
+ * @param <T> the types of items received from the Source
+ */
+public class SourcePublisher<T> implements Flow.Publisher<T> {
+
+	private static final Logger logger = LogManager.getLogger(SourcePublisher.class);
+
+
+	private final Source<T> source;
+
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+
+	private SourcePublisher(Source<T> source) {
+		Assert.notNull(source, "Source is required");
+		this.source = source;
+	}
+
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber, "Subscriber is required");
+		if (!this.subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("SourcePublisher allows only one Subscriber"));
+			return;
+		}
+		SourceSubscription subscription = new SourceSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		subscription.start();
+	}
+
+	@Override
+	public String toString() {
+		return "SourcePublisher for " + this.source;
+	}
+
+
+	/**
+	 * Adapt the given Source to a {@link Flow.Publisher}.
+	 */
+	public static <T> SourcePublisher<T> from(Source<T> source) {
+		return new SourcePublisher<>(source);
+	}
+
+
+	/**
+	 * Subscription that receives from the Source on its own virtual thread,
+	 * which parks while there is no demand.
+	 */
+	private final class SourceSubscription implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> subscriber;
+
+		private final AtomicLong demand = new AtomicLong();
+
+		private volatile @Nullable Thread thread;
+
+		private volatile @Nullable Throwable invalidRequest;
+
+		private volatile boolean cancelled;
+
+		SourceSubscription(Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		void start() {
+			this.thread = Thread.ofVirtual().name("source-publisher").start(this::run);
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				this.invalidRequest = new IllegalArgumentException("Demand must be positive: " + n);
+			}
+			else {
+				this.demand.getAndAccumulate(n, (current, added) -> {
+					long sum = current + added;
+					return (sum < 0 ? Long.MAX_VALUE : sum);
+				});
+			}
+			LockSupport.unpark(this.thread);
+		}
+
+		@Override
+		public void cancel() {
+			if (!this.cancelled) {
+				this.cancelled = true;
+				source.close();
+				Thread thread = this.thread;
+				if (thread != null && thread != Thread.currentThread()) {
+					// Wake up the thread if it is waiting to receive, e.g. from an idle Source
+					thread.interrupt();
+				}
+			}
+		}
+
+		private void run() {
+			try (source) {
+				while (!this.cancelled) {
+					Throwable invalidRequest = this.invalidRequest;
+					if (invalidRequest != null) {
+						this.cancelled = true;
+						this.subscriber.onError(invalidRequest);
+						return;
+					}
+					if (this.demand.get() == 0) {
+						LockSupport.park(this);
+						continue;
+					}
+					if (!source.receiveNext()) {
+						if (!this.cancelled) {
+							this.subscriber.onComplete();
+						}
+						return;
+					}
+					T item = source.next();
+					if (this.cancelled) {
+						return;
+					}
+					this.subscriber.onNext(item);
+					this.demand.getAndUpdate(current -> (current != Long.MAX_VALUE ? current - 1 : current));
+				}
+			}
+			catch (Throwable ex) {
+				if (this.cancelled) {
+					logger.debug("Source failed after cancellation: " + ex);
+				}
+				else {
+					this.cancelled = true;
+					this.subscriber.onError(ex);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link Spliterator} over the remaining items of a {@link Source}, which
+ * calls {@link Source#receiveNext()} for each item, and so may block. It
+ * cannot be split, and is the basis of {@link Source#stream()}.
+ *
+ * <p>An {@link IOException} from receiving is rethrown as an
+ * {@link UncheckedIOException}. If the thread is interrupted while receiving,
+ * the interrupt flag is restored, and an {@link IllegalStateException} is
+ * thrown.
+ *
+ * @param <T> the types of items received from the Source
+ */
+public class SourceSpliterator<T> implements Spliterator<T> {
+
+	private final Source<T> source;
+
+
+	public SourceSpliterator(Source<T> source) {
+		Assert.notNull(source, "Source is required");
+		this.source = source;
+	}
+
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		try {
+			if (!this.source.receiveNext()) {
+				return false;
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while receiving from " + this.source, ex);
+		}
+		action.accept(this.source.next());
+		return true;
+	}
+
+	@Override
+	public @Nullable Spliterator<T> trySplit() {
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+}
@@ -5,6 +5,8 @@ import java.util.concurrent.StructuredTaskScope;
 
 /**
  * ActiveSource that uses structured concurrency to execute the receiver task.
+ * A {@link StructuredTaskScope} is opened for each ActiveSource. To share one
+ * executor across many sources, use {@link ActiveSourceGroup}.
  */
 @SuppressWarnings("preview")
 public class StructuredActiveSource<T> extends AbstractActiveSource<T> {
@@ -41,6 +43,16 @@ public class StructuredActiveSource<T> extends AbstractActiveSource<T> {
 		}
 	}
 
+	@Override
+	protected void stopUnstarted() {
+		try {
+			this.scope.close();
+		}
+		finally {
+			super.stopUnstarted();
+		}
+	}
+
 
 	public static <T> StructuredActiveSource<T> from(Source<T> source) {
 		return new StructuredActiveSource<>(source);
@@ -0,0 +1,195 @@
+package source;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Strategy for how a consumer of an {@link AbstractActiveSource} waits for
+ * the next item when the {@link PrefetchQueue} is empty. Parking costs no CPU
+ * while waiting, but the producer then has to unpark the consumer, and the
+ * wake-up can take longer than processing the item. Spinning avoids that, at
+ * the cost of a core per waiting consumer, and is intended for
+ * latency-critical consumers on dedicated cores. Use one of the static
+ * factory methods to create an instance.
+ */
+public abstract class WaitStrategy {
+
+	private WaitStrategy() {
+	}
+
+
+	/**
+	 * Remove and return the next item, waiting for one if necessary.
+	 */
+	abstract Object take(PrefetchQueue queue) throws InterruptedException;
+
+	/**
+	 * Remove and return the next item, waiting up to the given time for one.
+	 * @param nanos the time to wait in nanoseconds
+	 * @return the item, or {@code null} if the time elapsed
+	 */
+	abstract @Nullable Object poll(PrefetchQueue queue, long nanos) throws InterruptedException;
+
+
+	/**
+	 * Park until the producer puts an item in the queue. This is the default.
+	 */
+	public static WaitStrategy park() {
+		return ParkStrategy.INSTANCE;
+	}
+
+	/**
+	 * Spin 1000 times, then yield 100 times, and then park.
+	 */
+	public static WaitStrategy spinThenYieldThenPark() {
+		return spinThenYieldThenPark(1000, 100);
+	}
+
+	/**
+	 * Spin with {@link Thread#onSpinWait()}, then {@link Thread#yield() yield},
+	 * each up to the given number of times, checking the queue in between,
+	 * and then park. Items that arrive in quick succession are picked up
+	 * without a wake-up, while a consumer of a quiet Source stops using CPU.
+	 * @param spins the maximum number of times to spin
+	 * @param yields the maximum number of times to yield
+	 */
+	public static WaitStrategy spinThenYieldThenPark(int spins, int yields) {
+		return new SpinYieldParkStrategy(spins, yields);
+	}
+
+	/**
+	 * Spin with {@link Thread#onSpinWait()} until an item arrives, the time
+	 * elapses, or the thread is interrupted, without ever parking. This takes
+	 * up a core for as long as the consumer waits.
+	 */
+	public static WaitStrategy busySpin() {
+		return BusySpinStrategy.INSTANCE;
+	}
+
+
+	private static void checkInterrupted() throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+
+	private static final class ParkStrategy extends WaitStrategy {
+
+		private static final ParkStrategy INSTANCE = new ParkStrategy();
+
+		@Override
+		Object take(PrefetchQueue queue) throws InterruptedException {
+			return queue.take();
+		}
+
+		@Override
+		@Nullable Object poll(PrefetchQueue queue, long nanos) throws InterruptedException {
+			return queue.poll(nanos, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public String toString() {
+			return "WaitStrategy[park]";
+		}
+	}
+
+
+	private static final class SpinYieldParkStrategy extends WaitStrategy {
+
+		private final int spins;
+
+		private final int yields;
+
+		SpinYieldParkStrategy(int spins, int yields) {
+			Assert.isTrue(spins >= 0, "spins must not be negative");
+			Assert.isTrue(yields >= 0, "yields must not be negative");
+			this.spins = spins;
+			this.yields = yields;
+		}
+
+		@Override
+		Object take(PrefetchQueue queue) throws InterruptedException {
+			Object item = spinAndYield(queue, Long.MAX_VALUE);
+			return (item != null ? item : queue.take());
+		}
+
+		@Override
+		@Nullable Object poll(PrefetchQueue queue, long nanos) throws InterruptedException {
+			long startTime = System.nanoTime();
+			Object item = spinAndYield(queue, nanos);
+			if (item != null) {
+				return item;
+			}
+			long remaining = nanos - (System.nanoTime() - startTime);
+			return (remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll());
+		}
+
+		private @Nullable Object spinAndYield(PrefetchQueue queue, long nanos) throws InterruptedException {
+			long startTime = System.nanoTime();
+			for (int i = 0; i < this.spins + this.yields; i++) {
+				Object item = queue.poll();
+				if (item != null) {
+					return item;
+				}
+				checkInterrupted();
+				if (i < this.spins) {
+					Thread.onSpinWait();
+				}
+				else {
+					Thread.yield();
+				}
+				// Check the time only every 64 spins, but after each yield
+				if ((i >= this.spins || (i & 63) == 63) && System.nanoTime() - startTime >= nanos) {
+					return null;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return "WaitStrategy[spinThenYieldThenPark, spins=" + this.spins + ", yields=" + this.yields + "]";
+		}
+	}
+
+
+	private static final class BusySpinStrategy extends WaitStrategy {
+
+		private static final BusySpinStrategy INSTANCE = new BusySpinStrategy();
+
+		@Override
+		Object take(PrefetchQueue queue) throws InterruptedException {
+			while (true) {
+				Object item = queue.poll();
+				if (item != null) {
+					return item;
+				}
+				checkInterrupted();
+				Thread.onSpinWait();
+			}
+		}
+
+		@Override
+		@Nullable Object poll(PrefetchQueue queue, long nanos) throws InterruptedException {
+			long startTime = System.nanoTime();
+			while (true) {
+				Object item = queue.poll();
+				if (item != null || System.nanoTime() - startTime >= nanos) {
+					return item;
+				}
+				checkInterrupted();
+				Thread.onSpinWait();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "WaitStrategy[busySpin]";
+		}
+	}
+
+}
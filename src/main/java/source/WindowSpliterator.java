@@ -0,0 +1,99 @@
+package source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.jspecify.annotations.Nullable;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link Spliterator} over windows of the remaining items of an
+ * {@link ActiveSource}, each of which ends when it reaches a maximum size,
+ * or spans a duration from its first item, whichever comes first. Unlike a
+ * {@link SourceGatherers time-based Gatherer}, which is driven by items, this
+ * waits for items with {@link ActiveSource#receiveBatch receiveBatch} and a
+ * timeout, so a window also ends while the Source is idle. It is the basis
+ * of {@link ActiveSource#streamWindows(int, Duration)}.
+ *
+ * <p>Exceptions from receiving are handled as in {@link SourceSpliterator}.
+ *
+ * @param <T> the types of items received from the Source
+ */
+public class WindowSpliterator<T> implements Spliterator<List<T>> {
+
+	private final ActiveSource<T> source;
+
+	private final int maxSize;
+
+	private final long durationNanos;
+
+
+	public WindowSpliterator(ActiveSource<T> source, int maxSize, Duration duration) {
+		Assert.notNull(source, "Source is required");
+		Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+		Assert.isTrue(!duration.isNegative() && !duration.isZero(), "Duration must be positive");
+		this.source = source;
+		this.maxSize = maxSize;
+		this.durationNanos = duration.toNanos();
+	}
+
+
+	@Override
+	public boolean tryAdvance(Consumer<? super List<T>> action) {
+		List<T> window = new ArrayList<>();
+		try {
+			long startTime = 0;
+			while (window.size() < this.maxSize) {
+				long timeout = this.durationNanos;
+				if (!window.isEmpty()) {
+					timeout -= System.nanoTime() - startTime;
+					if (timeout <= 0) {
+						break;
+					}
+				}
+				boolean empty = window.isEmpty();
+				int count = this.source.receiveBatch(window, this.maxSize - window.size(), Duration.ofNanos(timeout));
+				if (count > 0 && empty) {
+					startTime = System.nanoTime();
+				}
+				else if (count == 0 && this.source.isClosed()) {
+					break;
+				}
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while receiving from " + this.source, ex);
+		}
+		if (window.isEmpty()) {
+			return false;
+		}
+		action.accept(window);
+		return true;
+	}
+
+	@Override
+	public @Nullable Spliterator<List<T>> trySplit() {
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+}
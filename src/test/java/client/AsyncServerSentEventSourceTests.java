@@ -0,0 +1,102 @@
+package client;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import source.RingBufferPrefetchQueue;
+
+import org.springframework.http.codec.ServerSentEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link AsyncServerSentEventSource} against a local server, with a
+ * small prefetch queue, so that reading pauses and resumes many times.
+ */
+class AsyncServerSentEventSourceTests {
+
+	private static final int EVENT_COUNT = 20_000;
+
+
+	private HttpServer server;
+
+	private CloseableHttpAsyncClient client;
+
+	private URI url;
+
+
+	@BeforeEach
+	void setup() throws Exception {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/sse", exchange -> {
+			exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream body = exchange.getResponseBody()) {
+				for (int i = 0; i < EVENT_COUNT; i++) {
+					body.write(("id:" + i + "\ndata:event " + i + "\n\n").getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		});
+		this.server.start();
+		this.url = URI.create("http://localhost:" + this.server.getAddress().getPort() + "/sse");
+		this.client = HttpAsyncClients.createDefault();
+		this.client.start();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		this.client.close();
+		this.server.stop(0);
+	}
+
+
+	@Test
+	@Timeout(30)
+	void receiveAllWithPauses() throws Exception {
+		try (AsyncServerSentEventSource<String> source = new AsyncServerSentEventSource<>(this.client, this.url)) {
+			source.setPrefetchQueue(new RingBufferPrefetchQueue(2));
+			for (int i = 0; i < EVENT_COUNT; i++) {
+				assertTrue(source.receiveNext(), "Stream stalled or ended at " + i);
+				ServerSentEvent<String> event = source.next();
+				assertEquals(String.valueOf(i), event.id());
+				assertEquals("event " + i, event.data());
+				if (i == 0) {
+					// Let the queue fill up, so reading pauses
+					Thread.sleep(100);
+				}
+			}
+			assertFalse(source.receiveNext());
+		}
+	}
+
+	@Test
+	@Timeout(30)
+	void receiveBatchesWithPauses() throws Exception {
+		try (AsyncServerSentEventSource<String> source = new AsyncServerSentEventSource<>(this.client, this.url)) {
+			source.setPrefetchQueue(new RingBufferPrefetchQueue(4));
+			List<ServerSentEvent<String>> events = new ArrayList<>();
+			while (!source.isClosed()) {
+				source.receiveBatch(events, 3, Duration.ofSeconds(5));
+			}
+			assertEquals(EVENT_COUNT, events.size());
+			for (int i = 0; i < EVENT_COUNT; i++) {
+				assertEquals(String.valueOf(i), events.get(i).id());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link ServerSentEventParser}.
+ */
+class ServerSentEventParserTests {
+
+	private final ServerSentEventParser parser = new ServerSentEventParser(16);
+
+
+	@Test
+	void parseFields() {
+		feed("event:update\nid: 7\nretry:3000\ndata:a\ndata:  b\n\n");
+		assertTrue(this.parser.parseNext());
+		assertEquals("update", this.parser.getEventType());
+		assertEquals("7", this.parser.getId());
+		assertEquals(Duration.ofSeconds(3), this.parser.getRetry());
+		assertEquals("a\n b", this.parser.getDataAsString());
+		assertFalse(this.parser.parseNext());
+	}
+
+	@Test
+	void parseLineEndings() {
+		feed("data:lf\n\ndata:cr\r\rdata:crlf\r\n\r\ndata:mixed1\ndata:mixed2\r\r\n");
+		assertEquals("lf", parseData());
+		assertEquals("cr", parseData());
+		assertEquals("crlf", parseData());
+		assertEquals("mixed1\nmixed2", parseData());
+	}
+
+	@Test
+	void parseCrLfSplitAcrossInput() {
+		feed("data:a\r");
+		assertFalse(this.parser.parseNext());
+		feed("\n");
+		assertFalse(this.parser.parseNext());
+		feed("\r");
+		assertTrue(this.parser.parseNext());
+		assertEquals("a", this.parser.getDataAsString());
+		feed("\ndata:b\n\n");
+		assertEquals("b", parseData());
+	}
+
+	@Test
+	void parsePartialInput() {
+		List<String> ids = new ArrayList<>();
+		for (char c : "id:1\ndata:first\n\nid:2\ndata:second\n\n".toCharArray()) {
+			feed(String.valueOf(c));
+			if (this.parser.parseNext()) {
+				ids.add(this.parser.getId() + "=" + this.parser.getDataAsString());
+			}
+		}
+		assertEquals(List.of("1=first", "2=second"), ids);
+		assertFalse(this.parser.hasPartialEvent());
+	}
+
+	@Test
+	void parseLineLongerThanBuffer() throws IOException {
+		String data = "x".repeat(100);
+		InputStream inputStream = new ByteArrayInputStream(("data:" + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+		while (!this.parser.parseNext()) {
+			assertTrue(this.parser.fill(inputStream));
+		}
+		assertEquals(data, this.parser.getDataAsString());
+		assertFalse(this.parser.fill(inputStream));
+	}
+
+	@Test
+	void partialEventAtEndOfInput() {
+		feed("data:a\n");
+		assertFalse(this.parser.parseNext());
+		assertTrue(this.parser.hasPartialEvent());
+	}
+
+	@Test
+	void skipByteOrderMark() {
+		feed(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+		feed("data:a\n\n");
+		assertEquals("a", parseData());
+	}
+
+	@Test
+	void skipByteOrderMarkSplitAcrossInput() {
+		feed(new byte[] {(byte) 0xEF});
+		assertFalse(this.parser.parseNext());
+		assertFalse(this.parser.hasCompleteEvent());
+		feed(new byte[] {(byte) 0xBB, (byte) 0xBF, 'i', 'd', ':', '1', '\n', '\n'});
+		assertTrue(this.parser.hasCompleteEvent());
+		assertTrue(this.parser.parseNext());
+		assertEquals("1", this.parser.getId());
+	}
+
+	@Test
+	void byteOrderMarkOnlyAtStartOfStream() {
+		feed("data:a\n\n");
+		assertEquals("a", parseData());
+		feed(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'd', 'a', 't', 'a', ':', 'b', '\n', '\n'});
+		// Not a field name, so the line is ignored
+		assertFalse(this.parser.parseNext());
+	}
+
+	@Test
+	void ignoreCommentsAndInvalidFields() {
+		feed(":comment\nfoo:bar\nretry:soon\nid:a\0b\ndata\n\n");
+		assertTrue(this.parser.parseNext());
+		assertTrue(this.parser.hasData());
+		assertEquals("", this.parser.getDataAsString());
+		assertNull(this.parser.getId());
+		assertNull(this.parser.getRetry());
+	}
+
+	@Test
+	void eventWithoutData() {
+		// Dispatched, with empty data for a String target type, see ServerSentEventDecoder
+		feed("id:1\nretry:100\n\nevent:ping\n\n");
+		assertTrue(this.parser.parseNext());
+		assertFalse(this.parser.hasData());
+		assertEquals("", this.parser.getDataAsString());
+		assertEquals("1", this.parser.getId());
+		assertEquals(Duration.ofMillis(100), this.parser.getRetry());
+		assertTrue(this.parser.parseNext());
+		assertFalse(this.parser.hasData());
+		assertEquals("ping", this.parser.getEventType());
+		assertNull(this.parser.getId());
+		assertFalse(this.parser.parseNext());
+	}
+
+
+	@Test
+	void hasCompleteEvent() {
+		feed("data:a");
+		assertTrue(this.parser.hasBufferedInput());
+		assertFalse(this.parser.hasCompleteEvent());
+		feed("\n");
+		assertFalse(this.parser.hasCompleteEvent());
+		feed("\n");
+		assertTrue(this.parser.hasCompleteEvent());
+		assertTrue(this.parser.parseNext());
+		assertFalse(this.parser.hasCompleteEvent());
+	}
+
+	@Test
+	void hasCompleteEventIgnoresComments() {
+		feed(":heartbeat\n\n:heartbeat\n\n");
+		assertFalse(this.parser.hasCompleteEvent());
+		assertFalse(this.parser.parseNext());
+		feed("id:1\n\n");
+		assertTrue(this.parser.hasCompleteEvent());
+	}
+
+	@Test
+	void hasCompleteEventAfterPartiallyParsedEvent() {
+		feed("data:a\n");
+		assertFalse(this.parser.parseNext());
+		assertFalse(this.parser.hasCompleteEvent());
+		feed("\n");
+		assertTrue(this.parser.hasCompleteEvent());
+		assertTrue(this.parser.parseNext());
+		assertEquals("a", this.parser.getDataAsString());
+	}
+
+	@Test
+	void hasCompleteEventWithCrLf() {
+		feed("data:a\r");
+		assertFalse(this.parser.parseNext());
+		feed("\n\r\n");
+		assertTrue(this.parser.hasCompleteEvent());
+		assertTrue(this.parser.parseNext());
+		feed("data:b\r\n\r");
+		assertTrue(this.parser.hasCompleteEvent());
+	}
+
+	@Test
+	void hasCompleteEventIgnoresInvalidFields() {
+		feed("retry:x\nfoo:bar\n\n");
+		assertFalse(this.parser.hasCompleteEvent());
+		assertFalse(this.parser.parseNext());
+	}
+
+
+	private String parseData() {
+		assertTrue(this.parser.parseNext());
+		return this.parser.getDataAsString();
+	}
+
+	private void feed(String input) {
+		feed(input.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void feed(byte[] input) {
+		this.parser.feed(ByteBuffer.wrap(input));
+	}
+
+}
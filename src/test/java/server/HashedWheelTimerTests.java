@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link HashedWheelTimer}.
+ */
+class HashedWheelTimerTests {
+
+	private static final Duration TICK = Duration.ofMillis(10);
+
+
+	// A small wheel, so that delays span several rounds
+	private final HashedWheelTimer timer = new HashedWheelTimer(TICK, 4, Runnable::run);
+
+
+	@AfterEach
+	void tearDown() {
+		this.timer.close();
+	}
+
+
+	@Test
+	@Timeout(10)
+	void scheduleRunsAfterDelay() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		long startTime = System.nanoTime();
+		this.timer.schedule(latch::countDown, Duration.ofMillis(50));
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - startTime >= Duration.ofMillis(50).toNanos());
+	}
+
+	@Test
+	@Timeout(10)
+	void scheduleBeyondOneRound() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		long startTime = System.nanoTime();
+		this.timer.schedule(latch::countDown, Duration.ofMillis(175));
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - startTime >= Duration.ofMillis(170).toNanos());
+	}
+
+	@Test
+	@Timeout(10)
+	void scheduleWithoutDelay() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		this.timer.schedule(latch::countDown, Duration.ZERO);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void cancelBeforeExpiry() throws InterruptedException {
+		AtomicInteger count = new AtomicInteger();
+		HashedWheelTimer.Timeout timeout = this.timer.schedule(count::incrementAndGet, Duration.ofMillis(30));
+		assertTrue(timeout.cancel());
+		assertTrue(timeout.isCancelled());
+		Thread.sleep(100);
+		assertEquals(0, count.get());
+	}
+
+	@Test
+	@Timeout(10)
+	void cancelAfterExpiry() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		HashedWheelTimer.Timeout timeout = this.timer.schedule(latch::countDown, Duration.ofMillis(10));
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertFalse(timeout.cancel());
+		assertFalse(timeout.isCancelled());
+	}
+
+	@Test
+	@Timeout(10)
+	void scheduleAtFixedRateUntilCancelled() throws InterruptedException {
+		AtomicInteger count = new AtomicInteger();
+		CountDownLatch latch = new CountDownLatch(3);
+		HashedWheelTimer.Timeout timeout = this.timer.scheduleAtFixedRate(() -> {
+			count.incrementAndGet();
+			latch.countDown();
+		}, Duration.ofMillis(20));
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(timeout.cancel());
+		int cancelledCount = count.get();
+		Thread.sleep(100);
+		assertTrue(count.get() <= cancelledCount + 1, "Ran after cancel");
+	}
+
+	@Test
+	void scheduleAtFixedRateShorterThanTick() {
+		assertThrows(IllegalArgumentException.class, () -> this.timer.scheduleAtFixedRate(() -> {}, Duration.ofMillis(1)));
+	}
+
+	@Test
+	@Timeout(10)
+	void failedTaskDoesNotStopTimer() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		this.timer.schedule(() -> {
+			throw new IllegalStateException("Expected");
+		}, Duration.ofMillis(10));
+		this.timer.schedule(latch::countDown, Duration.ofMillis(30));
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void scheduleAfterClose() {
+		this.timer.close();
+		assertThrows(IllegalStateException.class, () -> this.timer.schedule(() -> {}, Duration.ofMillis(10)));
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link SseBroadcaster}.
+ */
+class SseBroadcasterTests {
+
+	@Test
+	@Timeout(30)
+	void publishToManySubscribersWithWriterPerStripe() throws Exception {
+		SseBroadcaster broadcaster = new SseBroadcaster(2, 0, Duration.ofMinutes(1));
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		CountDownLatch received = new CountDownLatch(1000);
+		for (int i = 0; i < 1000; i++) {
+			broadcaster.subscribe("topic", new TestEmitter(items -> {
+				threads.add(Thread.currentThread());
+				received.countDown();
+			}));
+		}
+		broadcaster.publish("topic", SseFrame.data("event"));
+		assertTrue(received.await(10, TimeUnit.SECONDS));
+		assertTrue(threads.size() <= 2, () -> threads.size() + " writer threads");
+	}
+
+	@Test
+	@Timeout(30)
+	void blockedSubscriberHandedOffItsWriter() throws Exception {
+		SseBroadcaster broadcaster = new SseBroadcaster(1, 0, Duration.ofMinutes(1));
+		broadcaster.setWriterHandoffTime(Duration.ofMillis(10));
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch unblock = new CountDownLatch(1);
+		broadcaster.subscribe("topic", new TestEmitter(items -> {
+			blocked.countDown();
+			unblock.await();
+		}));
+		CountDownLatch received = new CountDownLatch(20);
+		for (int i = 0; i < 10; i++) {
+			broadcaster.subscribe("topic", new TestEmitter(items -> received.countDown()));
+		}
+		broadcaster.publish("topic", SseFrame.data("event 1"));
+		assertTrue(blocked.await(10, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		broadcaster.publish("topic", SseFrame.data("event 2"));
+		assertTrue(received.await(10, TimeUnit.SECONDS));
+		assertEquals(11, broadcaster.getSubscriberCount("topic"));
+		unblock.countDown();
+	}
+
+
+	private interface Sender {
+
+		void send(Set<DataWithMediaType> items) throws Exception;
+	}
+
+
+	private static final class TestEmitter extends SseEmitter {
+
+		private final Sender sender;
+
+		TestEmitter(Sender sender) {
+			this.sender = sender;
+		}
+
+		@Override
+		public void send(Set<DataWithMediaType> items) throws IOException {
+			try {
+				this.sender.send(items);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IOException(ex);
+			}
+			catch (Exception ex) {
+				throw new IOException(ex);
+			}
+		}
+	}
+
+}
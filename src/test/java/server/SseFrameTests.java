@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link SseFrame}.
+ */
+class SseFrameTests {
+
+	@Test
+	void encodeFields() {
+		SseFrame frame = SseFrame.builder().id("1").name("update").reconnectTime(Duration.ofSeconds(5))
+				.comment("c").data("a\nb").build();
+		assertEquals("id:1\nevent:update\nretry:5000\n:c\ndata:a\ndata:b\n\n", encoded(frame));
+		assertEquals("1", frame.getId());
+	}
+
+	@Test
+	void dataWithLineBreaksSplitIntoLines() {
+		assertEquals("data:a\ndata:b\ndata:c\ndata:\n\n", encoded(SseFrame.data("a\r\nb\rc\n")));
+	}
+
+	@Test
+	void lineBreakRejected() {
+		for (String value : new String[] {"a\nb", "a\rb", "a\r\n"}) {
+			assertThrows(IllegalArgumentException.class, () -> SseFrame.builder().id(value));
+			assertThrows(IllegalArgumentException.class, () -> SseFrame.builder().name(value));
+			assertThrows(IllegalArgumentException.class, () -> SseFrame.builder().comment(value));
+		}
+	}
+
+	@Test
+	void nulInIdRejected() {
+		assertThrows(IllegalArgumentException.class, () -> SseFrame.builder().id("a\0b"));
+	}
+
+
+	private static String encoded(SseFrame frame) {
+		return new String(frame.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link SseReplayBuffer}.
+ */
+class SseReplayBufferTests {
+
+	@Test
+	void entriesAfterId() {
+		SseReplayBuffer buffer = new SseReplayBuffer(8, Duration.ofMinutes(1));
+		for (int i = 1; i <= 5; i++) {
+			buffer.append(String.valueOf(i), Set.of());
+		}
+		assertEquals(List.of(4L, 5L), sequences(buffer.getEntriesAfter("3")));
+		assertEquals(List.of(), sequences(buffer.getEntriesAfter("5")));
+		assertNull(buffer.getEntriesAfter("unknown"));
+	}
+
+	@Test
+	void entriesAfterEvictedId() {
+		SseReplayBuffer buffer = new SseReplayBuffer(4, Duration.ofMinutes(1));
+		for (int i = 1; i <= 10; i++) {
+			buffer.append(String.valueOf(i), Set.of());
+		}
+		assertNull(buffer.getEntriesAfter("5"));
+		assertEquals(List.of(8L, 9L, 10L), sequences(buffer.getEntriesAfter("7")));
+		assertEquals(List.of(7L, 8L, 9L, 10L), sequences(buffer.getEntriesAfter(0L)));
+	}
+
+	@Test
+	void entriesAfterIdIncludeEventsWithoutId() {
+		SseReplayBuffer buffer = new SseReplayBuffer(8, Duration.ofMinutes(1));
+		buffer.append("1", Set.of());
+		buffer.append(null, Set.of());
+		buffer.append("3", Set.of());
+		assertEquals(List.of(2L, 3L), sequences(buffer.getEntriesAfter("1")));
+	}
+
+	@Test
+	void expiredEntriesNotReplayed() throws InterruptedException {
+		SseReplayBuffer buffer = new SseReplayBuffer(8, Duration.ofMillis(50));
+		buffer.append("1", Set.of());
+		buffer.append("2", Set.of());
+		Thread.sleep(100);
+		buffer.append("3", Set.of());
+		assertEquals(List.of(3L), sequences(buffer.getEntriesAfter(0L)));
+		assertNull(buffer.getEntriesAfter("1"));
+	}
+
+	@Test
+	@Timeout(30)
+	void entriesContiguousWhileLapped() throws Exception {
+		SseReplayBuffer buffer = new SseReplayBuffer(16, Duration.ofMinutes(1));
+		int count = 500_000;
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<String> failure = new AtomicReference<>();
+		Thread writer = new Thread(() -> {
+			for (int i = 1; i <= count; i++) {
+				buffer.append(String.valueOf(i), Set.of());
+			}
+			done.set(true);
+		});
+		writer.start();
+		while (!done.get()) {
+			List<SseReplayBuffer.Entry> entries = buffer.getEntriesAfter(0L);
+			for (int i = 1; i < entries.size(); i++) {
+				if (entries.get(i).sequence() != entries.get(i - 1).sequence() + 1) {
+					failure.compareAndSet(null, "Hole after " + entries.get(i - 1).sequence());
+				}
+			}
+		}
+		writer.join();
+		assertNull(failure.get());
+		assertEquals(count, buffer.getLastSequence());
+	}
+
+
+	private static List<Long> sequences(List<SseReplayBuffer.Entry> entries) {
+		return entries.stream().map(SseReplayBuffer.Entry::sequence).toList();
+	}
+
+}
@@ -0,0 +1,118 @@
+package source;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link ActiveSourceGroup}.
+ */
+class ActiveSourceGroupTests {
+
+	private final ExecutorService consumers = Executors.newCachedThreadPool();
+
+
+	@AfterEach
+	void tearDown() {
+		this.consumers.shutdownNow();
+	}
+
+
+	@Test
+	@Timeout(10)
+	void closeWakesUpWaitingConsumer() throws Exception {
+		assertConsumerWokenUp(WaitStrategy.park());
+	}
+
+	@Test
+	@Timeout(10)
+	void closeWakesUpSpinningConsumer() throws Exception {
+		assertConsumerWokenUp(WaitStrategy.busySpin());
+	}
+
+	private void assertConsumerWokenUp(WaitStrategy waitStrategy) throws Exception {
+		IdleSource delegate = new IdleSource();
+		ActiveSourceGroup group = new ActiveSourceGroup();
+		AbstractActiveSource<String> source = group.add(delegate);
+		source.setWaitStrategy(waitStrategy);
+		Future<Boolean> received = this.consumers.submit(source::receiveNext);
+		assertTrue(delegate.receiving.await(5, TimeUnit.SECONDS));
+		group.close();
+		assertFalse(received.get(5, TimeUnit.SECONDS));
+		assertTrue(source.isClosed());
+		assertTrue(delegate.closed.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void closeBeforeReceiveClosesDelegate() throws Exception {
+		IdleSource delegate = new IdleSource();
+		try (ActiveSourceGroup group = new ActiveSourceGroup()) {
+			AbstractActiveSource<String> source = group.add(delegate);
+			source.close();
+			assertEquals(0, delegate.closed.getCount());
+			assertFalse(source.receiveNext());
+			assertEquals(1, delegate.receiving.getCount());
+		}
+	}
+
+	@Test
+	@Timeout(10)
+	void closeWhileWaitingForPermitClosesDelegate() throws Exception {
+		IdleSource delegate1 = new IdleSource();
+		IdleSource delegate2 = new IdleSource();
+		ActiveSourceGroup group = new ActiveSourceGroup(1);
+		AbstractActiveSource<String> source1 = group.add(delegate1);
+		AbstractActiveSource<String> source2 = group.add(delegate2);
+		Future<Boolean> received1 = this.consumers.submit(source1::receiveNext);
+		assertTrue(delegate1.receiving.await(5, TimeUnit.SECONDS));
+		Future<Boolean> received2 = this.consumers.submit(source2::receiveNext);
+		// Let the receiver task of source2 wait for a permit
+		Thread.sleep(100);
+		source2.close();
+		assertFalse(received2.get(5, TimeUnit.SECONDS));
+		assertTrue(delegate2.closed.await(5, TimeUnit.SECONDS));
+		assertEquals(1, delegate2.receiving.getCount());
+		group.close();
+		assertFalse(received1.get(5, TimeUnit.SECONDS));
+		assertTrue(delegate1.closed.await(5, TimeUnit.SECONDS));
+	}
+
+
+	/**
+	 * Source that waits for an item until interrupted.
+	 */
+	private static final class IdleSource implements Source<String> {
+
+		private final CountDownLatch receiving = new CountDownLatch(1);
+
+		private final CountDownLatch closed = new CountDownLatch(1);
+
+		@Override
+		public boolean receiveNext() throws InterruptedException {
+			this.receiving.countDown();
+			new CountDownLatch(1).await();
+			return false;
+		}
+
+		@Override
+		public String next() {
+			throw new IllegalStateException("No received item");
+		}
+
+		@Override
+		public void close() {
+			this.closed.countDown();
+		}
+	}
+
+}
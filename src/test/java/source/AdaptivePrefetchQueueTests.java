@@ -0,0 +1,122 @@
+package source;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link AdaptivePrefetchQueue}.
+ */
+class AdaptivePrefetchQueueTests {
+
+	@Test
+	void depthStartsAtCapacity() {
+		AdaptivePrefetchQueue queue = createQueue(8, new PrefetchBudget(1_000_000, 100));
+		assertEquals(8, queue.getDepth());
+	}
+
+	@Test
+	void dropNewestDropsOnlyWhenFull() throws InterruptedException {
+		AdaptivePrefetchQueue queue = createQueue(8, new PrefetchBudget(1_000_000, 100));
+		OverflowPolicy<Integer> policy = OverflowPolicy.dropNewest();
+		policy.publish(queue, List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+		assertEquals(8, queue.size());
+		assertEquals(2, policy.getDroppedCount());
+	}
+
+	@Test
+	void offerRefusedWhenBudgetUsedUp() {
+		PrefetchBudget budget = new PrefetchBudget(250, 100);
+		AdaptivePrefetchQueue queue = createQueue(8, budget);
+		assertTrue(queue.offer(0));
+		assertTrue(queue.offer(1));
+		assertFalse(queue.offer(2));
+		assertEquals(200, budget.getUsedBytes());
+	}
+
+	@Test
+	void emptyQueueAdmitsOneItemOverBudget() {
+		PrefetchBudget budget = new PrefetchBudget(100, 100);
+		AdaptivePrefetchQueue queue1 = createQueue(8, budget);
+		AdaptivePrefetchQueue queue2 = createQueue(8, budget);
+		assertTrue(queue1.offer(0));
+		assertTrue(queue2.offer(0));
+		assertFalse(queue2.offer(1));
+		assertEquals(200, budget.getUsedBytes());
+	}
+
+	@Test
+	void chargeReleasedOnRemoval() throws InterruptedException {
+		PrefetchBudget budget = new PrefetchBudget(1_000_000, 100);
+		AdaptivePrefetchQueue queue = createQueue(8, budget);
+		queue.putAll(List.of(0, 1, 2, 3));
+		assertEquals(400, budget.getUsedBytes());
+		assertEquals(0, queue.poll());
+		assertEquals(300, budget.getUsedBytes());
+		queue.evict();
+		assertEquals(200, budget.getUsedBytes());
+		queue.clear();
+		assertEquals(0, budget.getUsedBytes());
+		assertEquals(0, queue.getChargedBytes());
+	}
+
+	@Test
+	void sentinelNotCharged() {
+		PrefetchBudget budget = new PrefetchBudget(1_000_000, 100);
+		Object sentinel = new Object();
+		AdaptivePrefetchQueue queue = new AdaptivePrefetchQueue(
+				new RingBufferPrefetchQueue(8), budget, item -> budget.getDefaultItemSize(), sentinel);
+		assertTrue(queue.offer(0));
+		assertTrue(queue.offer(sentinel));
+		assertEquals(100, budget.getUsedBytes());
+		assertEquals(0, queue.poll());
+		assertEquals(0, budget.getUsedBytes());
+		assertEquals(sentinel, queue.poll());
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	@Test
+	void chargeConsistentWithConcurrentProducerAndConsumer() throws Exception {
+		PrefetchBudget budget = new PrefetchBudget(1_000_000, 100);
+		AdaptivePrefetchQueue queue = createQueue(16, budget);
+		int count = 200_000;
+		Thread producer = new Thread(() -> {
+			try {
+				for (int i = 0; i < count; i++) {
+					queue.put(i);
+				}
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, queue.take());
+		}
+		producer.join();
+		assertEquals(0, queue.getChargedBytes());
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	@Test
+	void itemSizeEstimated() {
+		PrefetchBudget budget = new PrefetchBudget(1_000_000, 100);
+		AdaptivePrefetchQueue queue = new AdaptivePrefetchQueue(new RingBufferPrefetchQueue(8), budget, item -> 1000);
+		for (int i = 0; i < 50; i++) {
+			queue.offer(i);
+			queue.poll();
+		}
+		assertTrue(queue.getEstimatedItemSize() > 900, () -> "Estimate " + queue.getEstimatedItemSize());
+	}
+
+
+	private static AdaptivePrefetchQueue createQueue(int capacity, PrefetchBudget budget) {
+		return new AdaptivePrefetchQueue(new RingBufferPrefetchQueue(capacity), budget, item -> budget.getDefaultItemSize());
+	}
+
+}
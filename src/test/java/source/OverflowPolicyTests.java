@@ -0,0 +1,109 @@
+package source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link OverflowPolicy}.
+ */
+class OverflowPolicyTests {
+
+	@Test
+	@Timeout(10)
+	void blockWaitsForSpace() throws Exception {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(2);
+		OverflowPolicy<Integer> policy = OverflowPolicy.block();
+		Thread producer = new Thread(() -> {
+			try {
+				policy.publish(queue, List.of(0, 1, 2, 3, 4));
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i, queue.take());
+		}
+		producer.join();
+		assertEquals(0, policy.getDroppedCount());
+	}
+
+	@Test
+	void dropOldestKeepsNewest() throws InterruptedException {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(2);
+		OverflowPolicy<Integer> policy = OverflowPolicy.dropOldest();
+		policy.publish(queue, List.of(0, 1, 2, 3, 4));
+		assertEquals(List.of(3, 4), drain(queue));
+		assertEquals(3, policy.getDroppedCount());
+	}
+
+	@Test
+	void dropNewestKeepsOldest() throws InterruptedException {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(2);
+		OverflowPolicy<Integer> policy = OverflowPolicy.dropNewest();
+		policy.publish(queue, List.of(0, 1, 2, 3, 4));
+		assertEquals(List.of(0, 1), drain(queue));
+		assertEquals(3, policy.getDroppedCount());
+	}
+
+	@Test
+	void conflateReplacesItemWithSameKey() throws InterruptedException {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(4);
+		OverflowPolicy<String> policy = OverflowPolicy.conflate(item -> item.substring(0, 1));
+		policy.publish(queue, List.of("a1", "b1", "a2", "c1", "b2"));
+		assertEquals(List.of("a2", "b2", "c1"), drain(queue));
+		assertEquals(2, policy.getConflatedCount());
+	}
+
+	@Test
+	void conflateWithNullKey() throws InterruptedException {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(4);
+		OverflowPolicy<String> policy = OverflowPolicy.conflate(item -> null);
+		policy.publish(queue, List.of("a", "a"));
+		assertEquals(List.of("a", "a"), drain(queue));
+		assertEquals(0, policy.getConflatedCount());
+	}
+
+	@Test
+	void conflateRejectedWithQueueWithoutReplace() {
+		TestSource source = new TestSource();
+		source.setPrefetchQueue(new BlockingPrefetchQueue(new ArrayBlockingQueue<>(4)));
+		assertThrows(IllegalArgumentException.class, () -> source.setOverflowPolicy(OverflowPolicy.conflate(item -> item)));
+
+		TestSource other = new TestSource();
+		other.setOverflowPolicy(OverflowPolicy.conflate(item -> item));
+		assertThrows(IllegalArgumentException.class,
+				() -> other.setPrefetchQueue(new BlockingPrefetchQueue(new ArrayBlockingQueue<>(4))));
+		other.setPrefetchQueue(new RingBufferPrefetchQueue(4));
+		assertTrue(other.getPrefetchQueue().isReplaceSupported());
+	}
+
+
+	private static List<Object> drain(PrefetchQueue queue) {
+		List<Object> items = new ArrayList<>();
+		queue.drainTo(items, Integer.MAX_VALUE);
+		return items;
+	}
+
+
+	private static final class TestSource extends AbstractPrefetchingSource<String> {
+
+		@Override
+		protected void startProducing() {
+		}
+
+		@Override
+		protected void stopProducing() {
+		}
+	}
+
+}
@@ -0,0 +1,184 @@
+package source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link RingBufferPrefetchQueue}.
+ */
+class RingBufferPrefetchQueueTests {
+
+	@Test
+	void capacityRoundedUpToPowerOfTwo() {
+		assertEquals(1, new RingBufferPrefetchQueue(1).capacity());
+		assertEquals(8, new RingBufferPrefetchQueue(5).capacity());
+		assertEquals(128, new RingBufferPrefetchQueue(128).capacity());
+	}
+
+	@Test
+	void offerAndPollInOrder() {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(4);
+		for (int lap = 0; lap < 3; lap++) {
+			for (int i = 0; i < 4; i++) {
+				assertTrue(queue.offer(i));
+			}
+			assertFalse(queue.offer(4));
+			assertEquals(4, queue.size());
+			for (int i = 0; i < 4; i++) {
+				assertEquals(i, queue.poll());
+			}
+			assertNull(queue.poll());
+			assertTrue(queue.isEmpty());
+		}
+	}
+
+	@Test
+	void evictRemovesOldest() {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(2);
+		queue.offer("a");
+		queue.offer("b");
+		assertEquals("a", queue.evict());
+		assertTrue(queue.offer("c"));
+		assertEquals("b", queue.poll());
+		assertEquals("c", queue.poll());
+		assertNull(queue.evict());
+	}
+
+	@Test
+	void replaceMostRecentMatch() {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(4);
+		queue.offer("a1");
+		queue.offer("b1");
+		queue.offer("a2");
+		assertTrue(queue.replace(item -> ((String) item).startsWith("a"), "a3"));
+		assertFalse(queue.replace(item -> ((String) item).startsWith("c"), "c1"));
+		assertEquals("a1", queue.poll());
+		assertEquals("b1", queue.poll());
+		assertEquals("a3", queue.poll());
+	}
+
+	@Test
+	void drainTo() {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(8);
+		for (int i = 0; i < 5; i++) {
+			queue.offer(i);
+		}
+		List<Object> items = new ArrayList<>();
+		assertEquals(3, queue.drainTo(items, 3));
+		assertEquals(List.of(0, 1, 2), items);
+		assertEquals(2, queue.drainTo(items, 10));
+		assertEquals(0, queue.drainTo(items, 10));
+	}
+
+	@Test
+	void pollTimesOut() throws InterruptedException {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(2);
+		long startTime = System.nanoTime();
+		assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(20));
+	}
+
+	@Test
+	@Timeout(10)
+	void pollWithMaxTimeoutWaits() throws InterruptedException {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(2);
+		Thread producer = new Thread(() -> {
+			sleep(50);
+			queue.offer("a");
+		});
+		producer.start();
+		assertEquals("a", queue.poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS));
+	}
+
+	@Test
+	@Timeout(30)
+	void putAllAndTakeConcurrently() throws Exception {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(16);
+		int count = 1_000_000;
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread producer = new Thread(() -> {
+			try {
+				List<Object> batch = new ArrayList<>();
+				for (int i = 0; i < count; i++) {
+					batch.add(i);
+					if (batch.size() == 7 || i == count - 1) {
+						queue.putAll(batch);
+						batch.clear();
+					}
+				}
+			}
+			catch (Throwable ex) {
+				failure.set(ex);
+			}
+		});
+		producer.start();
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, queue.take());
+		}
+		producer.join();
+		assertNull(failure.get());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	@Timeout(30)
+	void dropOldestWithFastProducer() throws Exception {
+		RingBufferPrefetchQueue queue = new RingBufferPrefetchQueue(4);
+		OverflowPolicy<Integer> policy = OverflowPolicy.dropOldest();
+		int count = 2_000_000;
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread producer = new Thread(() -> {
+			try {
+				for (int i = 0; i < count; i++) {
+					policy.publish(queue, List.of(i));
+				}
+			}
+			catch (Throwable ex) {
+				failure.set(ex);
+			}
+			finally {
+				done.set(true);
+			}
+		});
+		producer.start();
+		int last = -1;
+		int received = 0;
+		while (!done.get() || !queue.isEmpty()) {
+			Object item = queue.poll();
+			if (item != null) {
+				int value = (Integer) item;
+				int previous = last;
+				assertTrue(value > previous, () -> "Out of order: " + value + " after " + previous);
+				last = value;
+				received++;
+			}
+		}
+		producer.join();
+		assertNull(failure.get());
+		assertEquals(count - 1, last, "Newest item lost");
+		assertEquals(count, received + policy.getDroppedCount());
+	}
+
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
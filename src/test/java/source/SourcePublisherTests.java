@@ -0,0 +1,142 @@
+package source;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link SourcePublisher}.
+ */
+class SourcePublisherTests {
+
+	@Test
+	@Timeout(10)
+	void cancelWhileWaitingOnIdleSource() throws Exception {
+		IdleSource delegate = new IdleSource();
+		ThreadRecordingSource source = new ThreadRecordingSource(delegate);
+		TestSubscriber subscriber = new TestSubscriber();
+		SourcePublisher.from(source).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		assertTrue(delegate.receiving.await(5, TimeUnit.SECONDS));
+		subscriber.subscription.cancel();
+		assertTrue(delegate.interrupted.await(5, TimeUnit.SECONDS));
+		source.thread.join(5000);
+		assertFalse(source.thread.isAlive());
+	}
+
+	@Test
+	@Timeout(10)
+	void cancelWhileWaitingOnIdleActiveSource() throws Exception {
+		IdleSource delegate = new IdleSource();
+		try (ActiveSourceGroup group = new ActiveSourceGroup()) {
+			ThreadRecordingSource source = new ThreadRecordingSource(group.add(delegate));
+			TestSubscriber subscriber = new TestSubscriber();
+			SourcePublisher.from(source).subscribe(subscriber);
+			subscriber.subscription.request(1);
+			assertTrue(delegate.receiving.await(5, TimeUnit.SECONDS));
+			subscriber.subscription.cancel();
+			Thread thread = source.thread;
+			thread.join(5000);
+			assertFalse(thread.isAlive());
+			assertTrue(source.closed);
+		}
+	}
+
+
+	/**
+	 * Source that waits for an item until interrupted.
+	 */
+	private static final class IdleSource implements Source<String> {
+
+		private final CountDownLatch receiving = new CountDownLatch(1);
+
+		private final CountDownLatch interrupted = new CountDownLatch(1);
+
+		@Override
+		public boolean receiveNext() throws InterruptedException {
+			this.receiving.countDown();
+			try {
+				new CountDownLatch(1).await();
+			}
+			catch (InterruptedException ex) {
+				this.interrupted.countDown();
+				throw ex;
+			}
+			return false;
+		}
+
+		@Override
+		public String next() {
+			throw new IllegalStateException("No received item");
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+
+	/**
+	 * Source that records the thread it receives on.
+	 */
+	private static final class ThreadRecordingSource implements Source<String> {
+
+		private final Source<String> delegate;
+
+		private volatile Thread thread;
+
+		private volatile boolean closed;
+
+		ThreadRecordingSource(Source<String> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean receiveNext() throws IOException, InterruptedException {
+			this.thread = Thread.currentThread();
+			return this.delegate.receiveNext();
+		}
+
+		@Override
+		public String next() {
+			return this.delegate.next();
+		}
+
+		@Override
+		public void close() {
+			this.delegate.close();
+			this.closed = true;
+		}
+	}
+
+
+	private static final class TestSubscriber implements Flow.Subscriber<String> {
+
+		private Flow.Subscription subscription;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(String item) {
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package source;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link WindowSpliterator}.
+ */
+class WindowSpliteratorTests {
+
+	@Test
+	@Timeout(10)
+	void windowEndsWhileIdle() throws Exception {
+		CountDownLatch resume = new CountDownLatch(1);
+		TestSource source = new TestSource(producer -> {
+			producer.publish(List.of(1, 2, 3));
+			resume.await();
+			producer.publish(List.of(4));
+		});
+		try (Stream<List<Integer>> windows = source.streamWindows(10, Duration.ofMillis(50))) {
+			Iterator<List<Integer>> iterator = windows.iterator();
+			assertEquals(List.of(1, 2, 3), iterator.next());
+			resume.countDown();
+			assertEquals(List.of(4), iterator.next());
+			assertFalse(iterator.hasNext());
+		}
+	}
+
+	@Test
+	@Timeout(10)
+	void windowEndsAtMaxSize() {
+		TestSource source = new TestSource(producer -> producer.publish(List.of(1, 2, 3, 4, 5)));
+		try (Stream<List<Integer>> windows = source.streamWindows(2, Duration.ofSeconds(5))) {
+			assertEquals(List.of(List.of(1, 2), List.of(3, 4), List.of(5)), windows.toList());
+		}
+	}
+
+	@Test
+	void durationMustBePositive() {
+		TestSource source = new TestSource(producer -> {});
+		assertThrows(IllegalArgumentException.class, () -> source.streamWindows(2, Duration.ZERO));
+	}
+
+
+	private interface Producer {
+
+		void produce(TestSource source) throws Exception;
+	}
+
+
+	private static final class TestSource extends AbstractPrefetchingSource<Integer> {
+
+		private final Producer producer;
+
+		TestSource(Producer producer) {
+			this.producer = producer;
+		}
+
+		@Override
+		protected void startProducing() {
+			new Thread(() -> {
+				try {
+					this.producer.produce(this);
+					complete(null);
+				}
+				catch (Throwable ex) {
+					complete(ex);
+				}
+			}).start();
+		}
+
+		@Override
+		protected void stopProducing() {
+		}
+	}
+
+}